@@ -0,0 +1,57 @@
+package com.example.delivery_fee_calculator;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+
+/**
+ * Starts application contexts for benchmarks that need Spring beans.
+ * <p>
+ *     Every context gets its own in-memory H2 database, or database file, no web server and no scheduled imports.
+ * </p>
+ */
+public final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * Starts a new application context
+     *
+     * @param databaseName name of the in-memory H2 database to use
+     * @return started application context, to be closed by the caller
+     */
+    public static ConfigurableApplicationContext start(String databaseName) {
+        return new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                // Passed as arguments, so they override application.properties
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--weather.import.cron=-");
+    }
+
+    /**
+     * Starts a new application context with a file-backed database, configured as in the given profile
+     *
+     * @param databaseFile path of the H2 database file, without its extension
+     * @param profile profile to activate, null for the default configuration
+     * @return started application context, to be closed by the caller
+     */
+    public static ConfigurableApplicationContext startFileBacked(Path databaseFile, String profile) {
+        return new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles(profile == null ? new String[0] : new String[]{profile})
+                // Only the file is overridden, the connection settings are the ones of the profile
+                .run(
+                        "--delivery.database.file=" + databaseFile.toAbsolutePath(),
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--weather.import.cron=-");
+    }
+}
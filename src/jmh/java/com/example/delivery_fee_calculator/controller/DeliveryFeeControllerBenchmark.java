@@ -0,0 +1,62 @@
+package com.example.delivery_fee_calculator.controller;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the delivery fee controller method, without the HTTP and JSON layers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeliveryFeeControllerBenchmark {
+
+    private static final List<Delivery> DELIVERIES = List.of(
+            new Delivery("Tallinn", "Car", null),
+            new Delivery("Tartu", "Bike", null),
+            new Delivery("Pärnu", "Scooter", null),
+            new Delivery("tartu", "scooter", null),
+            new Delivery("Narva", "Car", null),
+            new Delivery("Tallinn", "Hot Wheels", null),
+            new Delivery("Tallinn", "Bike", 1742135000L),
+            new Delivery("Pärnu", "Car", 1742135000L));
+
+    private ConfigurableApplicationContext context;
+
+    private DeliveryFeeController controller;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContexts.start("controller-benchmark");
+        controller = context.getBean(DeliveryFeeController.class);
+
+        WeatherService weatherService = context.getBean(WeatherService.class);
+        weatherService.saveWeather(weather("Tallinn-Harku", 1.1, 2.0, "Clear"));
+        weatherService.saveWeather(weather("Tartu-Tõravere", -2.1, 4.7, "Light snow shower"));
+        weatherService.saveWeather(weather("Pärnu", 3.0, 11.2, "Light rain"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object deliveryFee() {
+        return controller.deliveryFee(DELIVERIES.get(next++ & (DELIVERIES.size() - 1)));
+    }
+
+    // Creates a weather observation recorded before the timestamps of the timestamped deliveries
+    private static Weather weather(String name, Double temp, Double wind, String phenomenon) {
+        return Weather.builder().name(name).wmo("0").temp(temp).wind(wind).phenomenon(phenomenon).timestamp(1742131859L).build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.delivery_fee_calculator.controller;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a single quote of the latest weather the way Spring MVC serves it: the request body is read by the
+ * configured message converter, quoted by the controller and the response body written by the configured message
+ * converter. Run with {@code -prof gc} to see the allocation per request.
+ * <p>
+ *     The servlet request and the message buffers are reused, so only the work of the converters and the controller
+ *     is measured, not the one of the servlet container.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeeRequestBenchmark {
+
+    private static final byte[][] BODIES = {
+            body("{\"city\": \"Tallinn\", \"vehicle\": \"Car\"}"),
+            body("{\"city\": \"Tartu\", \"vehicle\": \"Bike\"}"),
+            body("{\"city\": \"Pärnu\", \"vehicle\": \"Scooter\"}"),
+            body("{\"city\": \" tartu \", \"vehicle\": \"scooter\"}"),
+            body("{\"city\": \"Narva\", \"vehicle\": \"Car\"}"),
+            body("{\"city\": \"Tallinn\", \"vehicle\": \"Hot Wheels\"}"),
+            body("{\"city\": \"TALLINN\", \"vehicle\": \"bike\"}"),
+            body("{\"vehicle\": \"Car\", \"city\": \"Pärnu\"}")};
+
+    private ConfigurableApplicationContext context;
+
+    private DeliveryFeeController controller;
+
+    private HttpMessageConverter<Object> reader;
+
+    private HttpMessageConverter<Object> writer;
+
+    private final Input input = new Input();
+
+    private final Output output = new Output();
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContexts.start("fee-request-benchmark");
+        controller = context.getBean(DeliveryFeeController.class);
+
+        WeatherService weatherService = context.getBean(WeatherService.class);
+        weatherService.saveWeather(weather("Tallinn-Harku", 1.1, 2.0, "Clear"));
+        weatherService.saveWeather(weather("Tartu-Tõravere", -2.1, 4.7, "Light snow shower"));
+        weatherService.saveWeather(weather("Pärnu", 3.0, 11.2, "Light rain"));
+
+        // The converters Spring MVC picks first for the request and the response body
+        for (HttpMessageConverter<?> converter : context.getBean(HttpMessageConverters.class).getConverters()) {
+            if (reader == null && converter.canRead(Delivery.class, MediaType.APPLICATION_JSON)) reader = cast(converter);
+            if (writer == null && converter.canWrite(FeeQuote.class, MediaType.APPLICATION_JSON)) writer = cast(converter);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int feeRequest() throws IOException {
+        input.reset(BODIES[next++ & (BODIES.length - 1)]);
+        Delivery delivery = (Delivery) reader.read(Delivery.class, input);
+        ResponseEntity<FeeQuote> response = controller.deliveryFee(delivery);
+
+        output.reset();
+        writer.write(response.getBody(), MediaType.APPLICATION_JSON, output);
+        return output.body.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpMessageConverter<Object> cast(HttpMessageConverter<?> converter) {
+        return (HttpMessageConverter<Object>) converter;
+    }
+
+    private static byte[] body(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Creates a weather observation
+    private static Weather weather(String name, Double temp, Double wind, String phenomenon) {
+        return Weather.builder().name(name).wmo("0").temp(temp).wind(wind).phenomenon(phenomenon).timestamp(1742131859L).build();
+    }
+
+    // Request body, reused for every request
+    private static final class Input implements HttpInputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        private final Body body = new Body();
+
+        Input() {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+
+        void reset(byte[] bytes) {
+            body.reset(bytes);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    // Stream over the current request body
+    private static final class Body extends ByteArrayInputStream {
+
+        Body() {
+            super(new byte[0]);
+        }
+
+        void reset(byte[] bytes) {
+            buf = bytes;
+            pos = 0;
+            mark = 0;
+            count = bytes.length;
+        }
+    }
+
+    // Response body, reused for every request, the content type is set by the first response already
+    private static final class Output implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+        void reset() {
+            body.reset();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
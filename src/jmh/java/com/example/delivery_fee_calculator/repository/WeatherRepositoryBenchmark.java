@@ -0,0 +1,81 @@
+package com.example.delivery_fee_calculator.repository;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import com.example.delivery_fee_calculator.entity.Weather;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks weather lookups against an H2 database holding a given amount of stored observations.
+ * <p>
+ *     Observations are spread evenly over three stations, one per hour each.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WeatherRepositoryBenchmark {
+
+    private static final List<String> STATIONS = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private static final long FIRST_TIMESTAMP = 1_600_000_000L;
+
+    @Param({"10000", "100000", "1000000"})
+    public int observations;
+
+    private ConfigurableApplicationContext context;
+
+    private WeatherRepository weatherRepository;
+
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContexts.start("repository-benchmark-" + observations);
+        weatherRepository = context.getBean(WeatherRepository.class);
+
+        // Bulk load inside the database, saving through JPA would take longer than the benchmark itself
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO weather (id, name, wmo, temp, wind, phenomenon, timestamp)
+                SELECT X, CASE MOD(X - 1, 3) WHEN 0 THEN ? WHEN 1 THEN ? ELSE ? END, '0', 1.0, 1.0, 'Clear', ? + (X - 1) / 3 * 3600
+                FROM SYSTEM_RANGE(1, ?)""",
+                STATIONS.get(0), STATIONS.get(1), STATIONS.get(2), FIRST_TIMESTAMP, observations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Weather> findLatestByName() {
+        return weatherRepository.findLatestByName(randomStation(), Limit.of(1));
+    }
+
+    @Benchmark
+    public List<Weather> findLatestByNameAtOrBefore() {
+        // Random point in time between two imports
+        long timestamp = timestampOf(random.nextInt(observations)) + 1800L;
+        return weatherRepository.findLatestByNameAtOrBefore(randomStation(), timestamp, Limit.of(1));
+    }
+
+    @Benchmark
+    public List<Weather> findLatestOfEachStation() {
+        return weatherRepository.findLatestOfEachStation();
+    }
+
+    private String randomStation() {
+        return STATIONS.get(random.nextInt(STATIONS.size()));
+    }
+
+    // Timestamp of the i-th stored observation, every station is imported once per hour
+    private static long timestampOf(int i) {
+        return FIRST_TIMESTAMP + (long) (i / STATIONS.size()) * 3600L;
+    }
+}
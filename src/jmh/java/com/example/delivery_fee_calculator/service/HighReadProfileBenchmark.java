@@ -0,0 +1,101 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import com.example.delivery_fee_calculator.entity.Weather;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks point-in-time weather lookups of many concurrent clients against a file-backed database,
+ * configured as by default or as in the high-read profile.
+ * <p>
+ *     Every client runs on a virtual thread, like requests of the application, and makes its share of a fixed amount
+ *     of lookups one after another. The score is lookups per second of all clients together.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HighReadProfileBenchmark {
+
+    private static final List<String> STATIONS = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private static final long FIRST_TIMESTAMP = 1_600_000_000L;
+
+    private static final int OBSERVATIONS = 100_000;
+
+    // Lookups of all clients per invocation, divisible by every amount of clients
+    private static final int LOOKUPS = 4096;
+
+    @Param({"default", "high-read"})
+    public String profile;
+
+    @Param({"16", "64", "256"})
+    public int clients;
+
+    private Path directory;
+
+    private ConfigurableApplicationContext context;
+
+    private WeatherService weatherService;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("high-read-benchmark");
+        context = BenchmarkContexts.startFileBacked(directory.resolve("weatherdb"), "default".equals(profile) ? null : profile);
+        weatherService = context.getBean(WeatherService.class);
+
+        // Bulk load inside the database, saving through JPA would take longer than the benchmark itself
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO weather (id, name, wmo, temp, wind, phenomenon, phenomenon_class, timestamp)
+                SELECT X, CASE MOD(X - 1, 3) WHEN 0 THEN ? WHEN 1 THEN ? ELSE ? END, '0', 1.0, 1.0, 'Clear', 0, ? + (X - 1) / 3 * 3600
+                FROM SYSTEM_RANGE(1, ?)""",
+                STATIONS.get(0), STATIONS.get(1), STATIONS.get(2), FIRST_TIMESTAMP, OBSERVATIONS);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.close();
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void fetchWeatherByStationAtTime(Blackhole blackhole) throws Exception {
+        List<Callable<Weather>> tasks = new ArrayList<>(clients);
+        for (int client = 0; client < clients; client++) {
+            tasks.add(() -> {
+                Weather weather = null;
+                for (int i = 0; i < LOOKUPS / clients; i++) {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    // Random point in time between two imports
+                    long timestamp = FIRST_TIMESTAMP + (long) (random.nextInt(OBSERVATIONS) / STATIONS.size()) * 3600L + 1800L;
+                    weather = weatherService.fetchWeatherByStationAtTime(STATIONS.get(random.nextInt(STATIONS.size())), timestamp);
+                }
+                return weather;
+            });
+        }
+        for (Future<Weather> result : executor.invokeAll(tasks)) {
+            blackhole.consume(result.get());
+        }
+    }
+}
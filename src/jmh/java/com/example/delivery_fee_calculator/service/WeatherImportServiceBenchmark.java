@@ -0,0 +1,85 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing of a sample observations XML payload with a hundred stations.
+ * <p>
+ *     Compares the streaming parser of the import with a DOM baseline, which is how the import used to parse.
+ *     Run with {@code -prof gc} to compare allocation per import.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WeatherImportServiceBenchmark {
+
+    private static final Set<String> STATIONS = Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private static final CityRegistry CITY_REGISTRY = new CityRegistry(List.of(
+            new CityRegistry.City("Tallinn", "Tallinn-Harku"),
+            new CityRegistry.City("Tartu", "Tartu-Tõravere"),
+            new CityRegistry.City("Pärnu", "Pärnu")));
+
+    private final WeatherImportService weatherImportService = new WeatherImportService(null, CITY_REGISTRY, new SimpleMeterRegistry(),
+            URI.create("http://localhost/observations.xml"), Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            payload = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public List<Weather> parseObservations() throws XMLStreamException {
+        return weatherImportService.parseObservations(new ByteArrayInputStream(payload), STATIONS);
+    }
+
+    // Full DOM of the payload, every field looked up with getElementsByTagName
+    @Benchmark
+    public List<Weather> parseDomBaseline() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(payload));
+        document.getDocumentElement().normalize();
+        Element root = document.getDocumentElement();
+        Long timestamp = Long.valueOf(root.getAttribute("timestamp"));
+
+        List<Weather> observations = new ArrayList<>();
+        NodeList nodeList = root.getElementsByTagName("station");
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Element element = (Element) nodeList.item(i);
+            String name = elementText(element, "name");
+            if (STATIONS.contains(name)) {
+                observations.add(Weather.builder().name(name).wmo(elementText(element, "wmocode"))
+                        .temp(Double.valueOf(elementText(element, "airtemperature")))
+                        .wind(Double.valueOf(elementText(element, "windspeed")))
+                        .phenomenon(elementText(element, "phenomenon")).timestamp(timestamp).build());
+            }
+        }
+        return observations;
+    }
+
+    private static String elementText(Element element, String tagName) {
+        NodeList nodeList = element.getElementsByTagName(tagName);
+        return nodeList.getLength() > 0 ? nodeList.item(0).getTextContent().trim() : "";
+    }
+}
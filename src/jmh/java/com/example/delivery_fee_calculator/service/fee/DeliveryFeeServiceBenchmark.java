@@ -0,0 +1,75 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks delivery fee calculation over a realistic mix of cities, vehicles and weather conditions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeliveryFeeServiceBenchmark {
+
+    // Inputs as they arrive in requests, with mixed case and whitespace
+    private static final List<String> CITIES = List.of("Tallinn", "tallinn", "Tartu", "TARTU ", "Pärnu", "pärnu");
+    private static final List<String> VEHICLES = List.of("Car", "car", "Scooter", "Bike", "bike ", "BIKE");
+    private static final List<String> PHENOMENA = List.of("Clear", "Few clouds", "Overcast", "Light rain",
+            "Moderate rain", "Light snow shower", "Light sleet", "Mist", "Glaze", "Thunder");
+
+    private static final int INPUTS = 1024; // Power of two, so the next input can be picked with a mask
+
+    private final DeliveryFeeService deliveryFeeService = new DeliveryFeeService();
+
+    private final String[] cities = new String[INPUTS];
+    private final String[] vehicles = new String[INPUTS];
+    private final Double[] temperatures = new Double[INPUTS];
+    private final Double[] windSpeeds = new Double[INPUTS];
+    private final String[] phenomena = new String[INPUTS];
+
+    // Same inputs, interned once as the request path does
+    private final int[] cityCodes = new int[INPUTS];
+    private final int[] vehicleCodes = new int[INPUTS];
+    private final PhenomenonClass[] phenomenonClasses = new PhenomenonClass[INPUTS];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < INPUTS; i++) {
+            cities[i] = CITIES.get(random.nextInt(CITIES.size()));
+            vehicles[i] = VEHICLES.get(random.nextInt(VEHICLES.size()));
+            temperatures[i] = Math.round((random.nextDouble() * 35.0 - 20.0) * 10.0) / 10.0;
+            windSpeeds[i] = Math.round(random.nextDouble() * 25.0 * 10.0) / 10.0;
+            phenomena[i] = PHENOMENA.get(random.nextInt(PHENOMENA.size()));
+
+            cityCodes[i] = deliveryFeeService.feeTable().cityCode(cities[i].toLowerCase().trim());
+            vehicleCodes[i] = deliveryFeeService.feeTable().vehicleCode(vehicles[i].toLowerCase().trim());
+            phenomenonClasses[i] = PhenomenonClass.classify(phenomena[i]);
+        }
+    }
+
+    // Facade taking raw strings, as used by callers outside the request path
+    @Benchmark
+    public Double deliveryFeeCalculator() {
+        int i = next++ & (INPUTS - 1);
+        return deliveryFeeService.deliveryFeeCalculator(cities[i], vehicles[i], temperatures[i], windSpeeds[i], phenomena[i]);
+    }
+
+    // Compiling the default business rules, as done when changed rules are swapped in
+    @Benchmark
+    public FeeTable compileRules() {
+        return FeeTable.compile(DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules());
+    }
+
+    // Table lookup with interned inputs, taking the current table as the request path does
+    @Benchmark
+    public double feeLookup() {
+        int i = next++ & (INPUTS - 1);
+        return deliveryFeeService.feeTable().fee(cityCodes[i], vehicleCodes[i], temperatures[i], windSpeeds[i], phenomenonClasses[i]);
+    }
+}
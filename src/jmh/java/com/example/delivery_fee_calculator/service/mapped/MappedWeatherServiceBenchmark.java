@@ -0,0 +1,108 @@
+package com.example.delivery_fee_calculator.service.mapped;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks point-in-time weather lookups of the memory-mapped store against the database backed
+ * {@link WeatherServiceImpl}, both holding the same given amount of observations.
+ * <p>
+ *     Observations are spread evenly over three stations, one per hour each, so they span several yearly partitions.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappedWeatherServiceBenchmark {
+
+    private static final List<String> STATIONS = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+
+    private static final long FIRST_TIMESTAMP = 1_600_000_000L;
+
+    @Param({"10000", "100000"})
+    public int observations;
+
+    private ConfigurableApplicationContext context;
+
+    private WeatherServiceImpl weatherServiceImpl;
+
+    private Path directory;
+
+    private MappedWeatherServiceImpl mappedWeatherService;
+
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContexts.start("mapped-benchmark-" + observations);
+        weatherServiceImpl = context.getBean(WeatherServiceImpl.class);
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO weather (id, name, wmo, temp, wind, phenomenon, timestamp)
+                SELECT X, CASE MOD(X - 1, 3) WHEN 0 THEN ? WHEN 1 THEN ? ELSE ? END, '0', 1.0, 1.0, 'Clear', ? + (X - 1) / 3 * 3600
+                FROM SYSTEM_RANGE(1, ?)""",
+                STATIONS.get(0), STATIONS.get(1), STATIONS.get(2), FIRST_TIMESTAMP, observations);
+
+        directory = Files.createTempDirectory("mapped-benchmark");
+        mappedWeatherService = new MappedWeatherServiceImpl(directory, event -> { });
+        List<Weather> weatherList = new ArrayList<>(observations);
+        for (int i = 0; i < observations; i++) {
+            weatherList.add(Weather.builder().name(STATIONS.get(i % 3)).wmo("0").temp(1.0).wind(1.0)
+                    .phenomenon("Clear").timestamp(timestampOf(i)).build());
+        }
+        mappedWeatherService.saveAllWeather(weatherList);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        mappedWeatherService.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Weather jpaAtTime() {
+        return weatherServiceImpl.fetchWeatherByStationAtTime(randomStation(), randomTime());
+    }
+
+    @Benchmark
+    public Weather mappedAtTime() {
+        return mappedWeatherService.fetchWeatherByStationAtTime(randomStation(), randomTime());
+    }
+
+    @Benchmark
+    public Weather jpaLatest() {
+        return weatherServiceImpl.fetchLatestWeatherByStation(randomStation());
+    }
+
+    @Benchmark
+    public Weather mappedLatest() {
+        return mappedWeatherService.fetchLatestWeatherByStation(randomStation());
+    }
+
+    private String randomStation() {
+        return STATIONS.get(random.nextInt(STATIONS.size()));
+    }
+
+    // Random point in time between two imports
+    private long randomTime() {
+        return timestampOf(random.nextInt(observations)) + 1800L;
+    }
+
+    // Timestamp of the i-th stored observation, every station is imported once per hour
+    private static long timestampOf(int i) {
+        return FIRST_TIMESTAMP + (long) (i / STATIONS.size()) * 3600L;
+    }
+}
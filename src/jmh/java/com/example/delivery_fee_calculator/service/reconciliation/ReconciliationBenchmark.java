@@ -0,0 +1,83 @@
+package com.example.delivery_fee_calculator.service.reconciliation;
+
+import com.example.delivery_fee_calculator.BenchmarkContexts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks recomputing the fees of a file with the given amount of orders, against a year of hourly weather
+ * history of three stations.
+ * <p>
+ *     Orders are spread randomly over the year, the cities and the vehicle types, in random order.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReconciliationBenchmark {
+
+    private static final List<String> STATIONS = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+    private static final String[] CITIES = {"Tallinn", "Tartu", "Pärnu"};
+    private static final String[] VEHICLES = {"Car", "Scooter", "Bike"};
+    private static final String[] PHENOMENA = {"Clear", "Light rain", "Light snow shower", "Glaze"};
+
+    private static final long FIRST_TIMESTAMP = 1_700_000_000L;
+    private static final int HOURS = 365 * 24;
+
+    @Param({"1000000"})
+    public int orders;
+
+    private ConfigurableApplicationContext context;
+
+    private ReconciliationService reconciliationService;
+
+    private Path directory;
+
+    private Path input;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContexts.start("reconciliation-benchmark");
+        reconciliationService = context.getBean(ReconciliationService.class);
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO weather (id, name, wmo, temp, wind, phenomenon, timestamp)
+                SELECT X, CASE MOD(X - 1, 3) WHEN 0 THEN ? WHEN 1 THEN ? ELSE ? END, '0',
+                    MOD(X, 40) - 20, MOD(X, 25), CASE MOD(X, 4) WHEN 0 THEN ? WHEN 1 THEN ? WHEN 2 THEN ? ELSE ? END,
+                    ? + (X - 1) / 3 * 3600
+                FROM SYSTEM_RANGE(1, ?)""",
+                STATIONS.get(0), STATIONS.get(1), STATIONS.get(2), PHENOMENA[0], PHENOMENA[1], PHENOMENA[2], PHENOMENA[3],
+                FIRST_TIMESTAMP, HOURS * 3);
+
+        directory = Files.createTempDirectory("reconciliation-benchmark");
+        input = directory.resolve("orders.csv");
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int order = 0; order < orders; order++) {
+                writer.write("order-" + order + "," + CITIES[random.nextInt(CITIES.length)] + ","
+                        + VEHICLES[random.nextInt(VEHICLES.length)] + "," + (FIRST_TIMESTAMP + random.nextInt(HOURS * 3600)) + "\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public ReconciliationService.Summary reconcile() throws IOException {
+        return reconciliationService.reconcile(input, directory.resolve("fees.csv"));
+    }
+}
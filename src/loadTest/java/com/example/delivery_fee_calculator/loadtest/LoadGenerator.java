@@ -0,0 +1,130 @@
+package com.example.delivery_fee_calculator.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator, sending the requests of a {@link Traffic} at the fixed rate of its profile.
+ *
+ * <p>
+ *     Requests are sent at their scheduled time whether earlier ones have been answered or not, as real clients do.
+ *     The latency of a request is measured from its scheduled time, not from when it was actually sent, so a
+ *     stalling service is charged for the requests it held back as well (no coordinated omission). Latencies are
+ *     recorded in microseconds into an HdrHistogram per request kind, only after the warmup.
+ * </p>
+ */
+final class LoadGenerator {
+
+    // Highest latency recorded without saturating, longer ones are recorded as this
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final TrafficProfile profile;
+
+    private final Traffic traffic;
+
+    private final Map<RequestKind, KindResults> results = new EnumMap<>(RequestKind.class);
+
+    /**
+     * Constructs a LoadGenerator of the given traffic
+     *
+     * @param profile traffic profile, defining the rate, the warmup and the duration
+     * @param traffic requests to send
+     */
+    LoadGenerator(TrafficProfile profile, Traffic traffic) {
+        this.profile = profile;
+        this.traffic = traffic;
+        for (RequestKind kind : profile.mix().keySet()) results.put(kind, new KindResults());
+    }
+
+    /**
+     * Sends the requests for the warmup and the duration of the profile, and waits for the outstanding answers
+     *
+     * @return Returns the results per request kind, of the requests sent after the warmup
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Map<RequestKind, KindResults> run() throws InterruptedException {
+        Semaphore inFlight = new Semaphore(profile.maxInFlight());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+
+            long interval = TimeUnit.SECONDS.toNanos(1) / profile.rate();
+            long start = System.nanoTime();
+            long measuredFrom = start + profile.warmup().toNanos();
+            long end = measuredFrom + profile.duration().toNanos();
+            for (long i = 0; ; i++) {
+                long scheduled = start + i * interval;
+                if (scheduled - end >= 0) break;
+                waitUntil(scheduled);
+
+                Traffic.Request request = traffic.next();
+                KindResults kindResults = scheduled - measuredFrom >= 0 ? results.get(request.kind()) : null;
+                if (!inFlight.tryAcquire()) {
+                    // Too many unanswered requests, sending more would only measure the load generator
+                    if (kindResults != null) kindResults.dropped.increment();
+                    continue;
+                }
+                client.sendAsync(request.httpRequest(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    inFlight.release();
+                    if (kindResults == null) return;
+                    kindResults.record(System.nanoTime() - scheduled,
+                            error == null && request.kind().expected(response.statusCode()));
+                });
+            }
+
+            // Outstanding answers, each request times out on its own
+            if (!inFlight.tryAcquire(profile.maxInFlight(), 30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Requests still unanswered after the run");
+            }
+            client.shutdownNow();
+        }
+        return results;
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) LockSupport.parkNanos(remaining);
+    }
+
+    /**
+     * Results of the requests of one kind
+     */
+    static final class KindResults {
+
+        final Histogram latencies = new SynchronizedHistogram(HIGHEST_LATENCY_MICROS, 3);
+
+        final LongAdder errors = new LongAdder();
+
+        final LongAdder dropped = new LongAdder();
+
+        private void record(long latencyNanos, boolean ok) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_MICROS));
+            if (!ok) errors.increment();
+        }
+
+        /**
+         * @return Returns amount of requests, answered or not
+         */
+        long requests() {
+            return latencies.getTotalCount() + dropped.sum();
+        }
+
+        /**
+         * @return Returns amount of errors, dropped requests included
+         */
+        long failures() {
+            return errors.sum() + dropped.sum();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.delivery_fee_calculator.loadtest;
+
+import com.example.delivery_fee_calculator.DeliveryFeeCalculatorApplication;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.ObservationsFeedStub;
+import com.example.delivery_fee_calculator.service.WeatherImportService;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Load test of the delivery fee service, replaying a {@link TrafficProfile}.
+ *
+ * <p>
+ *     Starts the application on a free port against an in-memory H2, imports the observations of the local
+ *     {@link ObservationsFeedStub} and seeds hourly weather history before them, so no network access is needed and
+ *     every run starts from the same data. With a {@code target} in the profile, a running deployment is loaded
+ *     instead. Throughput, latency percentiles and error rates are printed per request kind and written to
+ *     {@code loadtest.reports}, along with the full latency distribution of every kind ({@code .hgrm}).
+ * </p>
+ * <p>
+ *     Exits with status 1 if the error rate or the 99th percentile latency of the whole run exceeds the thresholds of
+ *     the profile, so it can gate a release.
+ * </p>
+ * <p>
+ *     Arguments: name of the profile, followed by {@code key=value} overrides of it.
+ * </p>
+ */
+public final class LoadTest {
+
+    private static final String[] PHENOMENA = {"Clear", "Few clouds", "Overcast", "Light rain", "Moderate shower",
+            "Light snow shower", "Moderate sleet", "Glaze", "Thunder", "Mist"};
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrafficProfile profile = TrafficProfile.load(args.length == 0 ? "steady" : args[0],
+                Arrays.asList(args).subList(Math.min(1, args.length), args.length));
+
+        ConfigurableApplicationContext context = null;
+        URI baseUri;
+        long historyEnd;
+        if (profile.target() != null) {
+            baseUri = URI.create(profile.target());
+            historyEnd = Instant.now().getEpochSecond();
+        } else {
+            context = start();
+            baseUri = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+            historyEnd = seed(context, profile);
+        }
+        long historyStart = historyEnd - Duration.ofDays(profile.historyDays()).toSeconds();
+
+        System.out.printf("Load test %s: %d requests/s for %s after a warmup of %s against %s%n",
+                profile.name(), profile.rate(), profile.duration(), profile.warmup(), baseUri);
+        Map<RequestKind, LoadGenerator.KindResults> results =
+                new LoadGenerator(profile, new Traffic(profile, baseUri, historyStart, historyEnd)).run();
+
+        boolean passed = report(profile, results);
+        if (context != null) context.close();
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Starts the application on a free port, with an in-memory database and the feed stub
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--weather.import.cron=-",
+                "--weather.import.url=" + ObservationsFeedStub.url());
+    }
+
+    /**
+     * Imports the stubbed feed and seeds hourly weather history of every station before it
+     *
+     * @return Returns timestamp of the oldest latest observation, the end of the common history of all stations
+     */
+    private static long seed(ConfigurableApplicationContext context, TrafficProfile profile) {
+        context.getBean(WeatherImportService.class).scheduledTrigger();
+
+        WeatherService weatherService = context.getBean(WeatherService.class);
+        Random random = new Random(profile.seed());
+        long historyEnd = Long.MAX_VALUE;
+        int seeded = 0;
+        for (String station : context.getBean(CityRegistry.class).stations().stream().sorted().toList()) {
+            Weather latest = weatherService.fetchLatestWeatherByStation(station);
+            if (latest == null) throw new IllegalStateException("Feed stub has no observations of " + station);
+            historyEnd = Math.min(historyEnd, latest.getTimestamp());
+
+            List<Weather> history = new ArrayList<>();
+            for (int hour = 1; hour <= profile.historyDays() * 24; hour++) {
+                history.add(Weather.builder()
+                        .name(station)
+                        .wmo(latest.getWmo())
+                        .temp(Math.round((random.nextDouble() * 40 - 20) * 10) / 10.0)
+                        .wind(Math.round(random.nextDouble() * 250) / 10.0)
+                        .phenomenon(PHENOMENA[random.nextInt(PHENOMENA.length)])
+                        .timestamp(latest.getTimestamp() - hour * 3600L)
+                        .build());
+            }
+            seeded += weatherService.saveAllWeather(history).size();
+        }
+        System.out.printf("Seeded %d hourly observations over %d days%n", seeded, profile.historyDays());
+        return historyEnd;
+    }
+
+    /**
+     * Prints and writes the results, and checks them against the thresholds of the profile
+     *
+     * @return Returns true if the thresholds are met
+     */
+    private static boolean report(TrafficProfile profile, Map<RequestKind, LoadGenerator.KindResults> results) throws IOException {
+        Path directory = Files.createDirectories(Path.of(System.getProperty("loadtest.reports", "build/reports/loadtest")));
+        Histogram total = new Histogram(3);
+        long requests = 0;
+        long failures = 0;
+
+        StringBuilder table = new StringBuilder(String.format("%-14s %9s %9s %9s %9s %9s %9s %9s %9s%n",
+                "kind", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<RequestKind, LoadGenerator.KindResults> entry : results.entrySet()) {
+            LoadGenerator.KindResults kindResults = entry.getValue();
+            total.add(kindResults.latencies);
+            requests += kindResults.requests();
+            failures += kindResults.failures();
+            table.append(row(entry.getKey().label(), kindResults.latencies, kindResults.requests(), kindResults.failures(), profile));
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    directory.resolve(profile.name() + "-" + entry.getKey().label() + ".hgrm")), false, StandardCharsets.UTF_8)) {
+                kindResults.latencies.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        table.append(row("total", total, requests, failures, profile));
+
+        double errorRate = requests == 0 ? 0 : (double) failures / requests;
+        long p99Micros = total.getValueAtPercentile(99);
+        boolean passed = errorRate <= profile.maxErrorRate() && p99Micros <= profile.maxP99().toNanos() / 1000;
+        table.append(String.format("%nError rate %.4f (threshold %.4f), p99 %.3f ms (threshold %d ms): %s%n",
+                errorRate, profile.maxErrorRate(), p99Micros / 1000.0, profile.maxP99().toMillis(), passed ? "PASSED" : "FAILED"));
+
+        System.out.print(table);
+        Files.writeString(directory.resolve(profile.name() + ".txt"), table, StandardCharsets.UTF_8);
+        return passed;
+    }
+
+    private static String row(String label, Histogram latencies, long requests, long failures, TrafficProfile profile) {
+        StringBuilder row = new StringBuilder(String.format("%-14s %9d %9.1f %8.2f%%", label, requests,
+                (double) requests / profile.duration().toMillis() * 1000, requests == 0 ? 0 : 100.0 * failures / requests));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %9.3f", latencies.getValueAtPercentile(percentile) / 1000.0));
+        }
+        return row.append(String.format(" %9.3f%n", latencies.getMaxValue() / 1000.0)).toString();
+    }
+}
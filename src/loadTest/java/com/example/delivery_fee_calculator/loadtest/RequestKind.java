@@ -0,0 +1,50 @@
+package com.example.delivery_fee_calculator.loadtest;
+
+import java.util.Set;
+
+/**
+ * Kinds of requests a traffic profile mixes, named in the profile by their label.
+ * <p>
+ *     Every kind knows the statuses the service answers it with when it works correctly, any other answer, a
+ *     failed connection or a timeout counts as an error. A quote may be answered with HTTP 400 when the weather
+ *     forbids the vehicle, so that is an expected status of quotes as well.
+ * </p>
+ */
+public enum RequestKind {
+    /** {@code POST /delivery/fee} based on the latest weather */
+    LATEST("latest", Set.of(200, 400)),
+    /** {@code GET /delivery/fee?city&vehicle} based on the latest weather, as sent by caching clients */
+    LATEST_GET("latest-get", Set.of(200, 400)),
+    /** {@code POST /delivery/fee} with a timestamp within the weather history */
+    TIMESTAMPED("timestamped", Set.of(200, 400)),
+    /** {@code POST /delivery/fees} with a batch of latest and timestamped deliveries */
+    BATCH("batch", Set.of(200)),
+    /** {@code POST /delivery/fee} for a city that is not known */
+    UNKNOWN_CITY("unknown-city", Set.of(400)),
+    /** {@code POST /delivery/fee} with a malformed body */
+    INVALID_JSON("invalid-json", Set.of(400));
+
+    private final String label;
+
+    private final Set<Integer> expectedStatuses;
+
+    RequestKind(String label, Set<Integer> expectedStatuses) {
+        this.label = label;
+        this.expectedStatuses = expectedStatuses;
+    }
+
+    /**
+     * @return Returns name of the kind in traffic profiles and reports
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * @param status HTTP status of an answer
+     * @return Returns true if the status is an answer of a correctly working service
+     */
+    public boolean expected(int status) {
+        return expectedStatuses.contains(status);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.delivery_fee_calculator.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible sequence of requests of a traffic profile.
+ * <p>
+ *     Kinds are drawn by the weights of the mix, cities and vehicles uniformly from the profile and timestamps
+ *     uniformly from the weather history, all from one random generator seeded by the profile. The same profile
+ *     and history therefore always replay the same requests in the same order.
+ * </p>
+ */
+final class Traffic {
+
+    private static final String JSON = "application/json";
+    private static final int BATCH_SIZE = 10;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final TrafficProfile profile;
+
+    private final URI baseUri;
+
+    private final long historyStart;
+
+    private final long historyEnd;
+
+    private final Random random;
+
+    // Kinds of the mix, and the running total of their weights
+    private final RequestKind[] kinds;
+    private final int[] cumulativeWeights;
+
+    /**
+     * Constructs the traffic of a profile
+     *
+     * @param profile traffic profile
+     * @param baseUri base URI of the service
+     * @param historyStart start of the weather history, epoch seconds
+     * @param historyEnd end of the weather history, epoch seconds
+     */
+    Traffic(TrafficProfile profile, URI baseUri, long historyStart, long historyEnd) {
+        this.profile = profile;
+        this.baseUri = baseUri;
+        this.historyStart = historyStart;
+        this.historyEnd = historyEnd;
+        this.random = new Random(profile.seed());
+        this.kinds = profile.mix().keySet().toArray(RequestKind[]::new);
+        this.cumulativeWeights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += profile.mix().get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * @return Returns the next request of the sequence
+     */
+    Request next() {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= draw) i++;
+        RequestKind kind = kinds[i];
+
+        HttpRequest request = switch (kind) {
+            case LATEST -> post("/delivery/fee", delivery(city(), vehicle(), null));
+            case LATEST_GET -> HttpRequest.newBuilder(baseUri.resolve("/delivery/fee?city=" + encode(city()) + "&vehicle=" + encode(vehicle())))
+                    .timeout(REQUEST_TIMEOUT).GET().build();
+            case TIMESTAMPED -> post("/delivery/fee", delivery(city(), vehicle(), timestamp()));
+            case BATCH -> post("/delivery/fees", batch());
+            case UNKNOWN_CITY -> post("/delivery/fee", delivery("Narva", vehicle(), null));
+            case INVALID_JSON -> post("/delivery/fee", "{\"city\": \"" + city() + "\"");
+        };
+        return new Request(kind, request);
+    }
+
+    private String batch() {
+        List<String> deliveries = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            deliveries.add(delivery(city(), vehicle(), random.nextBoolean() ? timestamp() : null));
+        }
+        return "[" + String.join(",", deliveries) + "]";
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static String delivery(String city, String vehicle, Long timestamp) {
+        return "{\"city\": \"" + city + "\", \"vehicle\": \"" + vehicle + "\""
+                + (timestamp == null ? "" : ", \"timestamp\": " + timestamp) + "}";
+    }
+
+    private String city() {
+        return pick(profile.cities());
+    }
+
+    private String vehicle() {
+        return pick(profile.vehicles());
+    }
+
+    private long timestamp() {
+        return historyStart + (long) (random.nextDouble() * (historyEnd - historyStart));
+    }
+
+    private String pick(List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Request of the sequence
+     *
+     * @param kind kind of the request, its results are reported under
+     * @param httpRequest the request to send
+     */
+    record Request(RequestKind kind, HttpRequest httpRequest) {
+    }
+}
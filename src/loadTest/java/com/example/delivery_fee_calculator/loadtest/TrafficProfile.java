@@ -0,0 +1,98 @@
+package com.example.delivery_fee_calculator.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Traffic profile of a load test, read from {@code profiles/<name>.properties} on the classpath.
+ *
+ * <p>
+ *     Keys in use, every one of them can be overridden by a {@code key=value} argument:
+ * </p>
+ * <ul>
+ *     <li>{@code rate} requests per second, sent at a fixed pace whether earlier requests have been answered or not</li>
+ *     <li>{@code warmup} and {@code duration} how long requests are sent before and while they are measured</li>
+ *     <li>{@code seed} seed of the request sequence and the seeded weather, the same seed replays the same traffic</li>
+ *     <li>{@code max-in-flight} requests waiting for an answer, beyond it requests are dropped and counted as errors</li>
+ *     <li>{@code history-days} days of hourly weather history seeded per station, timestamped requests fall into them</li>
+ *     <li>{@code mix.<kind>} weight of a {@link RequestKind}, by its name, kinds without a weight are not sent</li>
+ *     <li>{@code cities} and {@code vehicles} comma separated values the requests pick from</li>
+ *     <li>{@code threshold.error-rate} and {@code threshold.p99} limits of the whole run, the load test fails beyond them</li>
+ *     <li>{@code target} (Optional) base URL of a running deployment to send to, instead of starting the application</li>
+ * </ul>
+ */
+public record TrafficProfile(String name, int rate, Duration warmup, Duration duration, long seed, int maxInFlight,
+                             int historyDays, Map<RequestKind, Integer> mix, List<String> cities, List<String> vehicles,
+                             double maxErrorRate, Duration maxP99, String target) {
+
+    /**
+     * Loads a profile from the classpath, applying the overrides
+     *
+     * @param name name of the profile
+     * @param overrides {@code key=value} pairs replacing the values of the profile
+     * @return Returns the loaded profile
+     * @throws IOException if the profile can not be read
+     * @throws IllegalArgumentException if the profile does not exist or a value is missing or invalid
+     */
+    public static TrafficProfile load(String name, List<String> overrides) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = TrafficProfile.class.getResourceAsStream("/profiles/" + name + ".properties")) {
+            if (in == null) throw new IllegalArgumentException("Unknown traffic profile: " + name);
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        for (String override : overrides) {
+            int separator = override.indexOf('=');
+            if (separator < 1) throw new IllegalArgumentException("Override is not key=value: " + override);
+            properties.setProperty(override.substring(0, separator).trim(), override.substring(separator + 1).trim());
+        }
+
+        Map<RequestKind, Integer> mix = new EnumMap<>(RequestKind.class);
+        for (RequestKind kind : RequestKind.values()) {
+            int weight = Integer.parseInt(properties.getProperty("mix." + kind.label(), "0"));
+            if (weight < 0) throw new IllegalArgumentException("Negative weight of " + kind.label());
+            if (weight > 0) mix.put(kind, weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("Traffic profile " + name + " has no request mix");
+
+        TrafficProfile profile = new TrafficProfile(name,
+                Integer.parseInt(required(properties, "rate")),
+                DurationStyle.detectAndParse(required(properties, "warmup")),
+                DurationStyle.detectAndParse(required(properties, "duration")),
+                Long.parseLong(properties.getProperty("seed", "42")),
+                Integer.parseInt(properties.getProperty("max-in-flight", "1000")),
+                Integer.parseInt(properties.getProperty("history-days", "30")),
+                mix,
+                list(required(properties, "cities")),
+                list(required(properties, "vehicles")),
+                Double.parseDouble(properties.getProperty("threshold.error-rate", "0")),
+                DurationStyle.detectAndParse(properties.getProperty("threshold.p99", "1s")),
+                properties.getProperty("target"));
+        if (profile.rate() <= 0 || profile.maxInFlight() <= 0 || profile.historyDays() <= 0) {
+            throw new IllegalArgumentException("Rate, max-in-flight and history-days must be positive: " + profile);
+        }
+        return profile;
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Traffic profile misses " + key);
+        return value;
+    }
+
+    private static List<String> list(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+}
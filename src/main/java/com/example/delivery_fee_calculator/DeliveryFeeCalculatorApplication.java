@@ -2,16 +2,19 @@
 
 	import org.springframework.boot.SpringApplication;
 	import org.springframework.boot.autoconfigure.SpringBootApplication;
+	import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 	import org.springframework.scheduling.annotation.EnableScheduling;
 
 	/**
 	 * Main entry point for delivery fee calculator application.
 	 * <p>
-	 *     This class starts up Spring Boot application and enables scheduling for periodic tasks
+	 *     This class starts up Spring Boot application, enables scheduling for periodic tasks and binds
+	 *     the {@code @ConfigurationProperties} classes of the application
 	 * </p>
 	 */
 	@SpringBootApplication
 	@EnableScheduling
+	@ConfigurationPropertiesScan
 	public class DeliveryFeeCalculatorApplication {
 
 		/**
@@ -1,16 +1,56 @@
 package com.example.delivery_fee_calculator.controller;
 
 import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.dto.FeeChanges;
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.dto.FeeUpdate;
 import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.CityRegistry;
 import com.example.delivery_fee_calculator.service.WeatherService;
 import com.example.delivery_fee_calculator.service.fee.DeliveryFeeService;
+import com.example.delivery_fee_calculator.service.fee.FeeMatrix;
+import com.example.delivery_fee_calculator.service.fee.FeeMatrixChangedEvent;
+import com.example.delivery_fee_calculator.service.fee.FeeMatrixService;
+import com.example.delivery_fee_calculator.service.fee.FeeTable;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <!DOCTYPE html>
@@ -40,7 +80,7 @@ import java.util.Map;
  *    <p>
  *       <b>Allowed Values:</b>
  *    <ul>
- *       <li><b>city</b>: "Tallinn", "Tartu", "Pärnu"</li>
+ *       <li><b>city</b>: a city of the {@link CityRegistry}, by default "Tallinn", "Tartu", "Pärnu"</li>
  *       <li><b>vehicle</b>: "Car", "Scooter", "Bike"</li>
  *    </ul>
  *    </p>
@@ -50,7 +90,7 @@ import java.util.Map;
  *       <li>
  *          HTTP 400 with an error message on failure:
  *          <ul>
- *             <li>{@code {"error": "City not found"}} - if the provided city is not in the allowed list. List of allowed: "Tallinn", "Tartu", "Pärnu"</li>
+ *             <li>{@code {"error": "City not found"}} - if the provided city is not in the {@link CityRegistry}.</li>
  *             <li>{@code {"error" : "Weather data not available"}} - if no weather data is found for the city or timestamp.</li>
  *             <li>{@code {"error" : "Usage of selected vehicle type is forbidden"}} - if business rules disallow the selected vehicle type.</li>
  *             <li>{@code {"error" : "Invalid request body: please provide a valid JSON"}} - if a malformed JSON request was provided or fields are missing/incorrect.</li>
@@ -58,67 +98,476 @@ import java.util.Map;
  *       </li>
  *    </ul>
  *    </p>
+ *    <p>
+ *       <b>Caching:</b> the same quote is also available as {@code GET /delivery/fee?city=Tallinn&vehicle=Car},
+ *       which proxies can cache. Quotes based on the latest weather are sent there with an {@code ETag} of the
+ *       weather snapshot and a {@code Cache-Control} header, and answered with HTTP 304 when {@code If-None-Match}
+ *       holds the current {@code ETag}. POST responses carry no cache headers.
+ *    </p>
+ *    <p>
+ *       <b>Fast path:</b> the request body is read by the {@link DeliveryMessageConverter} and the response body is
+ *       written by the {@link FeeQuoteMessageConverter}, without Jackson databind. Quotes based on the latest weather
+ *       are looked up in the {@link FeeMatrix} by a pair of indexes and answered with responses built once per
+ *       matrix, so such a quote touches neither the weather nor the business rules and allocates next to nothing.
+ *    </p>
+ *    <p>
+ *       <b>Batch:</b> {@code /delivery/fees} accepts a JSON array of the same objects and responds with HTTP 200 and
+ *       a JSON array holding a {@code {"fee" : value_given}} or {@code {"error" : message}} object per delivery,
+ *       in the order of the input.
+ *    </p>
+ *    <p>
+ *       <b>Streaming:</b> {@code /delivery/fee/stream} accepts newline-delimited JSON ({@code application/x-ndjson}),
+ *       one delivery per line, and answers every line with a quote line as soon as it is read, over one connection.
+ *       The next delivery is read only once the previous quote is written, so a slow client holds back the stream.
+ *    </p>
+ *    <p>
+ *       <b>Updates:</b> {@code GET /delivery/fee/updates?city=Tallinn&vehicle=Car&city=Tartu&vehicle=Bike} subscribes
+ *       to the fees of the given city and vehicle pairs as Server-Sent Events. The current fee of every pair is sent
+ *       first, afterwards a pair is sent again whenever new weather or changed business rules change its fee.
+ *    </p>
+ *    <p>
+ *       <b>Changes:</b> {@code GET /delivery/fee/changes?since=version} responds with the fees of all city and vehicle
+ *       pairs changed since a version of the fee matrix, and the current version to ask with next time.
+ *    </p>
  * </html>
  */
+@Slf4j
 @RestController
 public class DeliveryFeeController {
 
+    private static final String CITY_NOT_FOUND = FeeQuote.CITY_NOT_FOUND;
+    private static final String WEATHER_NOT_AVAILABLE = FeeQuote.WEATHER_NOT_AVAILABLE;
+    private static final String VEHICLE_FORBIDDEN = FeeQuote.VEHICLE_FORBIDDEN;
+    private static final String INVALID_JSON = FeeQuote.INVALID_JSON;
+
+    // Quotes failing before any fee is looked up, answered with the same response every time
+    private static final Quote CITY_NOT_FOUND_QUOTE = Quote.prebuilt(FeeQuote.ofError(CITY_NOT_FOUND), null, null);
+    private static final Quote WEATHER_NOT_AVAILABLE_QUOTE = Quote.prebuilt(FeeQuote.ofError(WEATHER_NOT_AVAILABLE), null, null);
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    // Tag value for a city or vehicle outside of the known ones, keeps the amount of timers bounded
+    private static final String UNKNOWN_TAG = "unknown";
+
+    // Outcome tag values, a quote timer is cached per outcome by its position
+    private static final String[] OUTCOMES = {"ok", "forbidden", "no-weather", "unknown-city", "error"};
+
     private final DeliveryFeeService deliveryFeeService;
 
     private final WeatherService weatherService;
 
+    private final CityRegistry cityRegistry;
+
+    private final FeeMatrixService feeMatrixService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Clock clock;
+
+    // Timers of the quotes of the current fee table, replaced when the table is
+    private volatile QuoteTimers quoteTimers;
+
+    // Responses of the quotes of the current fee matrix, replaced when the matrix is
+    private volatile LatestQuotes latestQuotes;
+
+    private final ObjectMapper objectMapper;
+
+    // Weather of a station in effect at a timestamp
+    private final WeatherLookup weatherLookup = this::fetchWeather;
+
+    // Cache-Control of quotes based on the latest weather, key in use: {@code delivery.fee.cache-max-age}
+    private final CacheControl latestQuoteCacheControl;
+
+    // How long a fee update subscription is kept open, key in use: {@code delivery.fee.updates.timeout}
+    private final Duration updatesTimeout;
+
+    // Open fee update subscriptions
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // Sends fee updates, so a slow subscriber holds up neither the others nor the weather import
+    private final ExecutorService updateExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     // Constructor Injection: Spring automatically injects the required beans
-    public DeliveryFeeController(DeliveryFeeService deliveryFeeService, WeatherService weatherService) {
+    public DeliveryFeeController(DeliveryFeeService deliveryFeeService, WeatherService weatherService,
+                                 CityRegistry cityRegistry, FeeMatrixService feeMatrixService,
+                                 MeterRegistry meterRegistry, ObjectMapper objectMapper,
+                                 @Value("${delivery.fee.cache-max-age}") Duration cacheMaxAge,
+                                 @Value("${delivery.fee.updates.timeout}") Duration updatesTimeout) {
         this.deliveryFeeService = deliveryFeeService;
         this.weatherService = weatherService;
+        this.cityRegistry = cityRegistry;
+        this.feeMatrixService = feeMatrixService;
+        this.meterRegistry = meterRegistry;
+        this.clock = meterRegistry.config().clock();
+        this.objectMapper = objectMapper;
+        this.latestQuoteCacheControl = CacheControl.maxAge(cacheMaxAge).cachePublic();
+        this.updatesTimeout = updatesTimeout;
+    }
+
+    // Stops sending fee updates when the application shuts down
+    @PreDestroy
+    void closeSubscriptions() {
+        updateExecutor.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
     }
 
     /**
      * Calculates the total delivery fee based on city, vehicle type, and weather conditions.
+     * <p>
+     *     Every quote is timed by the {@code delivery.fee.quote} timer, tagged by city, vehicle and outcome
+     *     (ok, forbidden, no-weather, unknown-city).
+     * </p>
      *
      * @param delivery A JSON object containing "city" and "vehicle" parameters.
-     *                 (Optional) If "timestamp" was also included, sends delivery fee for that period
+     *                 (Optional) If "timestamp" was also included, sends delivery fee for the weather observed at or before it
      * @return A ResponseEntity containing either the calculated fee (HTTP 200) or an error message (HTTP 400).
      */
     @PostMapping("/delivery/fee")
-    public ResponseEntity<?> deliveryFee(@Validated @RequestBody Delivery delivery) {
-        // Cleaning and formatting of data
-        String city = delivery.city().toLowerCase().trim();
-        String vehicle = delivery.vehicle().toLowerCase().trim();
-        Long timestamp = delivery.timestamp(); // If timestamp was included (Optional)
+    public ResponseEntity<FeeQuote> deliveryFee(@Validated @RequestBody Delivery delivery) {
+        // Not cacheable, so neither conditional nor sent with cache headers
+        return respond(delivery, null);
+    }
 
-        // Mapping of a city to a weather station
-        Map<String, String> stationCityRelation = new HashMap<>();
-        stationCityRelation.put("tartu", "Tartu-Tõravere");
-        stationCityRelation.put("pärnu", "Pärnu");
-        stationCityRelation.put("tallinn", "Tallinn-Harku");
+    /**
+     * Calculates the total delivery fee based on city, vehicle type, and weather conditions, given as query parameters.
+     *
+     * @param city city name
+     * @param vehicle vehicle type
+     * @param timestamp (Optional) sends delivery fee for the weather observed at or before it
+     * @param webRequest the GET or HEAD request, checked for a matching {@code If-None-Match}
+     * @return A ResponseEntity containing either the calculated fee (HTTP 200), an error message (HTTP 400) or
+     *         nothing (HTTP 304) if the quote has not changed
+     */
+    @GetMapping("/delivery/fee")
+    public ResponseEntity<FeeQuote> deliveryFee(@RequestParam String city, @RequestParam String vehicle,
+                                                @RequestParam(required = false) Long timestamp, WebRequest webRequest) {
+        return respond(new Delivery(city, vehicle, timestamp), webRequest);
+    }
 
-        // Valdiates the city is in the known list
-        if (!stationCityRelation.containsKey(city)) return ResponseEntity.badRequest().body(Map.of("error", "City not found"));
-
-        // Get list of weathers by station. (Optional) List of weathers by station and timestamp
-        List<Weather> weatherList;
-        if (timestamp == null) {
-            weatherList = weatherService.fetchWeatherByStation(stationCityRelation.get(city));
-        } else {
-            Weather weather = weatherService.fetchWeatherByStationAndTimestamp(stationCityRelation.get(city), timestamp);
-            weatherList = (weather != null) ? List.of(weather) : List.of();
+    /**
+     * Calculates delivery fees for a whole batch of deliveries.
+     * <p>
+     *     Weather is resolved only once per distinct station and timestamp pair of the batch, quotes based on the
+     *     latest weather are looked up in the fee matrix.
+     * </p>
+     *
+     * @param deliveries A JSON array of objects in the same format as for {@code /delivery/fee}
+     * @return A ResponseEntity (HTTP 200) containing a JSON array with a {@code {"fee" : value_given}} or
+     *         {@code {"error" : message}} object for every delivery, in the order of the input
+     */
+    @PostMapping("/delivery/fees")
+    public ResponseEntity<List<FeeQuote>> deliveryFees(@RequestBody List<Delivery> deliveries) {
+        // Weather resolved so far for this batch, an empty Optional when no weather data is available
+        Map<WeatherKey, Optional<Weather>> resolvedWeather = new HashMap<>();
+        WeatherLookup weatherLookup = (station, timestamp) -> resolvedWeather.computeIfAbsent(new WeatherKey(station, timestamp),
+                key -> Optional.ofNullable(fetchWeather(key.station(), key.timestamp()))).orElse(null);
+
+        List<FeeQuote> quotes = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            quotes.add(delivery == null ? FeeQuote.ofError(INVALID_JSON) : quote(delivery, weatherLookup).feeQuote());
         }
+        return ResponseEntity.ok(quotes);
+    }
 
-        // Make sure the weather information exists
-        if (weatherList.isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Weather data not available"));
+    /**
+     * Gets the delivery fees based on the latest weather that changed since a version of the fee matrix.
+     * <p>
+     *     Without a version, or with one that is unknown or too old, the whole matrix is returned and marked as full.
+     * </p>
+     *
+     * @param since (Optional) version of the fee matrix from a previous response
+     * @return A ResponseEntity (HTTP 200) containing the current version and the changed fees
+     */
+    @GetMapping("/delivery/fee/changes")
+    public ResponseEntity<FeeChanges> deliveryFeeChanges(@RequestParam(required = false) Long since) {
+        return ResponseEntity.ok(feeMatrixService.changesSince(since));
+    }
+
+    /**
+     * Calculates delivery fees for a stream of deliveries, given as newline-delimited JSON.
+     * <p>
+     *     Every line is answered with a {@code {"fee" : value_given}} or {@code {"error" : message}} line in the
+     *     same order, flushed right away. A line that is not a valid delivery is answered with an error and the
+     *     stream goes on. The response ends when the request body does.
+     * </p>
+     *
+     * @param body request body, one JSON delivery per line
+     * @param response response the quote lines are written to
+     * @throws IOException if the connection fails
+     */
+    @PostMapping(value = "/delivery/fee/stream", consumes = NDJSON, produces = NDJSON)
+    public void deliveryFeeStream(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        OutputStream out = response.getOutputStream();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) continue;
+
+            FeeQuote quote;
+            try {
+                quote = timedQuote(objectMapper.readValue(line, Delivery.class)).feeQuote();
+            } catch (JsonProcessingException e) {
+                quote = FeeQuote.ofError(INVALID_JSON);
+            }
+            out.write(objectMapper.writeValueAsBytes(quote));
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Subscribes to the fees of city and vehicle pairs based on the latest weather, as Server-Sent Events.
+     * <p>
+     *     The i-th city is paired with the i-th vehicle type. An event named {@code fee} holding a
+     *     {@link FeeUpdate} is sent for every pair at first, and again whenever the fee of the pair changes.
+     *     Updates are conflated, a subscriber that falls behind gets only the newest fees. The subscription is
+     *     closed after {@code delivery.fee.updates.timeout}, clients reconnect as usual for Server-Sent Events.
+     * </p>
+     *
+     * @param city cities of the pairs
+     * @param vehicle vehicle types of the pairs
+     * @return the event stream
+     * @throws ResponseStatusException (HTTP 400) if the amounts of cities and vehicle types differ
+     */
+    @GetMapping(value = "/delivery/fee/updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter deliveryFeeUpdates(@RequestParam List<String> city, @RequestParam List<String> vehicle) {
+        if (city.size() != vehicle.size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every city needs a vehicle type");
+        }
+        List<Delivery> deliveries = new ArrayList<>(city.size());
+        for (int i = 0; i < city.size(); i++) deliveries.add(new Delivery(city.get(i), vehicle.get(i), null));
+
+        Subscription subscription = new Subscription(new SseEmitter(updatesTimeout.toMillis()), deliveries);
+        subscription.emitter.onCompletion(() -> subscriptions.remove(subscription));
+        subscription.emitter.onTimeout(() -> subscriptions.remove(subscription));
+        subscription.emitter.onError(e -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+
+        // Sends the current fees
+        update(subscription);
+        return subscription.emitter;
+    }
+
+    /**
+     * Re-quotes all subscriptions when the fee of a pair based on the latest weather has changed, the new fee matrix
+     * is published before the event is
+     */
+    @EventListener(FeeMatrixChangedEvent.class)
+    public void onQuoteInputsChanged() {
+        subscriptions.forEach(this::update);
+    }
+
+    // Sends the changed fees of a subscription, unless an update of it is already waiting to be sent
+    private void update(Subscription subscription) {
+        if (!subscription.pending.compareAndSet(false, true)) return;
+        updateExecutor.execute(() -> {
+            subscription.lock.lock();
+            try {
+                // Cleared before quoting, so a change from now on queues another update
+                subscription.pending.set(false);
+                List<Delivery> deliveries = subscription.deliveries;
+                for (int i = 0; i < deliveries.size(); i++) {
+                    Delivery delivery = deliveries.get(i);
+                    FeeQuote quote = quote(delivery, weatherLookup).feeQuote();
+                    if (!quote.equals(subscription.sentQuotes[i])) {
+                        subscription.emitter.send(SseEmitter.event().name("fee")
+                                .data(FeeUpdate.of(delivery.city(), delivery.vehicle(), quote), MediaType.APPLICATION_JSON));
+                        subscription.sentQuotes[i] = quote;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the subscription timed out
+                log.debug("Fee update subscription closed: {}", e.getMessage());
+                subscriptions.remove(subscription);
+            } finally {
+                subscription.lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Responds with the quote of a single delivery, with cache headers if it is based on the latest weather and
+     * the request is cacheable
+     *
+     * @param delivery delivery to calculate the fee for
+     * @param webRequest (Optional) the GET or HEAD request, checked for a matching {@code If-None-Match},
+     *                   null if the response must not be cached
+     * @return A ResponseEntity containing either the calculated fee (HTTP 200) or an error message (HTTP 400),
+     *         null if the quote has not changed, in which case HTTP 304 is sent
+     */
+    private ResponseEntity<FeeQuote> respond(Delivery delivery, WebRequest webRequest) {
+        Quote quote = timedQuote(delivery);
+        if (quote.eTag() != null && webRequest != null) {
+            return webRequest.checkNotModified(quote.eTag()) ? null : quote.cacheableResponse();
         }
-        // Retrieve the first available weather record
-        Weather weather = weatherList.get(0);
+        if (quote.response() != null) return quote.response();
+
+        return quote.feeQuote().error() == null ? ResponseEntity.ok(quote.feeQuote()) : ResponseEntity.badRequest().body(quote.feeQuote());
+    }
 
-        // Calculate the delivery fee with provided city, vehicle and weather information
-        Double fee = deliveryFeeService.deliveryFeeCalculator(city,vehicle,weather.getTemp(),weather.getWind(),weather.getPhenomenon());
+    // Calculates the delivery fee of a single delivery with the latest or timestamped weather, timed by its outcome
+    private Quote timedQuote(Delivery delivery) {
+        long start = clock.monotonicTime();
+        Quote quote = quote(delivery, weatherLookup);
+        quoteTimer(delivery, quote.feeQuote()).record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        return quote;
+    }
+
+    /**
+     * Calculates the delivery fee of a single delivery
+     * <p>
+     *     Quotes based on the latest weather are served from the {@link FeeMatrix}. City and vehicle are matched
+     *     ignoring case and surrounding whitespace by the lookups themselves, no normalized copy of them is made.
+     * </p>
+     *
+     * @param delivery delivery to calculate the fee for
+     * @param weatherLookup resolves the weather of a station in effect at a timestamp
+     * @return quote containing the calculated fee or an error message
+     */
+    private Quote quote(Delivery delivery, WeatherLookup weatherLookup) {
+        Long timestamp = delivery.timestamp(); // If timestamp was included (Optional)
+        if (timestamp == null) return latestQuote(delivery);
+
+        // Valdiates the city is in the known list
+        String station = cityRegistry.station(delivery.city());
+        if (station == null) return CITY_NOT_FOUND_QUOTE;
+
+        // Weather by station in effect at the timestamp
+        Weather weather = weatherLookup.find(station, timestamp);
+
+        // Make sure the weather information exists
+        if (weather == null) return WEATHER_NOT_AVAILABLE_QUOTE;
+
+        // One fee table for the whole quote, as the business rules may be swapped meanwhile
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        int cityCode = feeTable.cityCode(delivery.city());
+        int vehicleCode = feeTable.vehicleCode(delivery.vehicle());
+        return Quote.of(calculate(feeTable, cityCode, vehicleCode, weather));
+    }
+
+    // Quote of a single delivery based on the latest weather, looked up in the current fee matrix
+    private Quote latestQuote(Delivery delivery) {
+        FeeMatrix matrix = feeMatrixService.matrix();
+        LatestQuotes quotes = latestQuotes;
+        if (quotes == null || quotes.matrix() != matrix) latestQuotes = quotes = LatestQuotes.of(matrix, latestQuoteCacheControl);
+
+        int city = matrix.cityIndex(delivery.city());
+        if (city == FeeMatrix.UNKNOWN) return CITY_NOT_FOUND_QUOTE;
+        return quotes.quotes()[matrix.slot(city, matrix.vehicleIndex(delivery.vehicle()))];
+    }
+
+    // Calculates the delivery fee with provided city, vehicle and weather information
+    private FeeQuote calculate(FeeTable feeTable, int city, int vehicle, Weather weather) {
+        double fee = feeTable.fee(city, vehicle,
+                weather.getTemp(), weather.getWind(), weather.getPhenomenonClass());
 
         // If the usage of vehicle type is forbidden
-        if (fee == null) {
-            return ResponseEntity.badRequest().body(Map.of("error","Usage of selected vehicle type is forbidden"));
+        if (fee == FeeTable.FORBIDDEN) return FeeQuote.ofError(VEHICLE_FORBIDDEN);
+
+        return FeeQuote.ofFee(fee);
+    }
+
+    // Timer of the quote, unknown cities and vehicles share a tag value. Registered on first use and kept per fee
+    // table, so timing a quote needs neither a builder nor a registry lookup
+    private Timer quoteTimer(Delivery delivery, FeeQuote quote) {
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        QuoteTimers timers = quoteTimers;
+        if (timers == null || timers.feeTable() != feeTable) quoteTimers = timers = QuoteTimers.of(feeTable);
+
+        int city = feeTable.cityCode(delivery.city());
+        int vehicle = feeTable.vehicleCode(delivery.vehicle());
+        int outcome = outcome(quote);
+        int slot = ((city + 1) * (feeTable.vehicles().size() + 1) + vehicle + 1) * OUTCOMES.length + outcome;
+        Timer timer = timers.timers()[slot];
+        if (timer == null) {
+            // Registering again returns the same timer, so a race only costs a lookup
+            timer = Timer.builder("delivery.fee.quote")
+                    .description("Duration of a delivery fee quote")
+                    .tag("city", city == FeeTable.UNKNOWN ? UNKNOWN_TAG : feeTable.cities().get(city))
+                    .tag("vehicle", vehicle == FeeTable.UNKNOWN ? UNKNOWN_TAG : feeTable.vehicles().get(vehicle))
+                    .tag("outcome", OUTCOMES[outcome])
+                    .register(meterRegistry);
+            timers.timers()[slot] = timer;
+        }
+        return timer;
+    }
+
+    // Outcome of a quote, as a position in OUTCOMES
+    private static int outcome(FeeQuote quote) {
+        if (quote.error() == null) return 0;
+        return switch (quote.error()) {
+            case VEHICLE_FORBIDDEN -> 1;
+            case WEATHER_NOT_AVAILABLE -> 2;
+            case CITY_NOT_FOUND -> 3;
+            default -> 4;
+        };
+    }
+
+    // Fetches the weather of the station in effect at the timestamp
+    private Weather fetchWeather(String station, Long timestamp) {
+        return weatherService.fetchWeatherByStationAtTime(station, timestamp);
+    }
+
+    // Resolves the weather of a station in effect at a timestamp
+    @FunctionalInterface
+    private interface WeatherLookup {
+        Weather find(String station, Long timestamp);
+    }
+
+    // Station and timestamp the weather is looked up by
+    private record WeatherKey(String station, Long timestamp) {
+    }
+
+    // Quotes of a fee matrix along with their responses, by slot. Tagged by the fee table version, the weather
+    // snapshot timestamp and the slot, quotes without weather are not tagged
+    private record LatestQuotes(FeeMatrix matrix, Quote[] quotes) {
+
+        static LatestQuotes of(FeeMatrix matrix, CacheControl cacheControl) {
+            Quote[] quotes = new Quote[matrix.slots()];
+            String version = Integer.toHexString(matrix.feeTable().version());
+            for (int city = 0; city < matrix.cities().size(); city++) {
+                Long weatherTimestamp = matrix.weatherTimestamp(city);
+                for (int vehicle = FeeTable.UNKNOWN; vehicle < matrix.feeTable().vehicles().size(); vehicle++) {
+                    int slot = matrix.slot(city, vehicle);
+                    quotes[slot] = weatherTimestamp == null ? WEATHER_NOT_AVAILABLE_QUOTE : Quote.prebuilt(matrix.quote(slot),
+                            "\"" + version + "-" + weatherTimestamp + "-" + slot + "\"", cacheControl);
+                }
+            }
+            return new LatestQuotes(matrix, quotes);
+        }
+    }
+
+    // Quote timers of a fee table, by city, vehicle and outcome, null until first used
+    private record QuoteTimers(FeeTable feeTable, Timer[] timers) {
+
+        static QuoteTimers of(FeeTable feeTable) {
+            return new QuoteTimers(feeTable,
+                    new Timer[(feeTable.cities().size() + 1) * (feeTable.vehicles().size() + 1) * OUTCOMES.length]);
+        }
+    }
+
+    // Fee update subscription: the pairs subscribed to and the quote last sent for each of them
+    private static final class Subscription {
+
+        private final SseEmitter emitter;
+
+        private final List<Delivery> deliveries;
+
+        // Guarded by the lock, null until the first quote of the pair is sent
+        private final FeeQuote[] sentQuotes;
+
+        // Whether an update is queued and not started yet
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        // Held while sending, so updates of a subscription never overtake each other
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Subscription(SseEmitter emitter, List<Delivery> deliveries) {
+            this.emitter = emitter;
+            this.deliveries = List.copyOf(deliveries);
+            this.sentQuotes = new FeeQuote[deliveries.size()];
         }
-        return ResponseEntity.ok(Map.of("fee", fee));
     }
 }
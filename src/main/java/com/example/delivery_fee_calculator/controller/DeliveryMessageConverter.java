@@ -0,0 +1,149 @@
+package com.example.delivery_fee_calculator.controller;
+
+import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.fee.DeliveryFeeService;
+import com.example.delivery_fee_calculator.service.fee.FeeTable;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads the {@link Delivery} request body of {@code /delivery/fee} without Jackson databind.
+ * <p>
+ *     The JSON is read token by token with the streaming parser. A city or vehicle type is looked up straight from the
+ *     buffer of the parser, in the {@link CityRegistry} and in the current {@link FeeTable}, ignoring case and
+ *     surrounding whitespace. A known one is replaced by its lowercase name, so it is normalized exactly once and no
+ *     String is created for it, an unknown one is kept as given. Fields are read as databind would: unknown fields are
+ *     skipped, other scalars are taken as text, and a timestamp may be a number or a numeric string.
+ * </p>
+ * <p>
+ *     Registered as a bean, so Spring MVC picks it before the Jackson converter for a single delivery.
+ *     Other types, such as the list of deliveries of {@code /delivery/fees}, are still read by Jackson.
+ * </p>
+ */
+@Component
+public class DeliveryMessageConverter extends AbstractHttpMessageConverter<Delivery> {
+
+    private final JsonFactory jsonFactory;
+
+    private final CityRegistry cityRegistry;
+
+    private final DeliveryFeeService deliveryFeeService;
+
+    /**
+     * Constructs a DeliveryMessageConverter parsing with the settings of the given ObjectMapper.
+     * <p>
+     *     Buffers of the parser are recycled through a shared pool, as the default pool is thread local and requests
+     *     are served on virtual threads, which would never reuse a buffer.
+     * </p>
+     *
+     * @param objectMapper the ObjectMapper bean whose parser settings are used
+     * @param cityRegistry the CityRegistry bean cities are looked up in
+     * @param deliveryFeeService the DeliveryFeeService bean whose fee table vehicle types are looked up in
+     */
+    public DeliveryMessageConverter(ObjectMapper objectMapper, CityRegistry cityRegistry, DeliveryFeeService deliveryFeeService) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.jsonFactory = objectMapper.getFactory().rebuild().recyclerPool(JsonRecyclerPools.sharedBoundedPool()).build();
+        this.cityRegistry = cityRegistry;
+        this.deliveryFeeService = deliveryFeeService;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Delivery.class == clazz;
+    }
+
+    /**
+     * Only reads deliveries, writing is left to Jackson
+     */
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Delivery readInternal(Class<? extends Delivery> clazz, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new HttpMessageNotReadableException("Delivery is not a JSON object", inputMessage);
+            }
+
+            String city = null;
+            String vehicle = null;
+            Long timestamp = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                // Field names are canonicalized by the parser, no String is created for them
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "city" -> city = city(parser, value, inputMessage);
+                    case "vehicle" -> vehicle = vehicle(parser, value, inputMessage);
+                    case "timestamp" -> timestamp = timestamp(parser, value, inputMessage);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (city == null || vehicle == null) {
+                throw new HttpMessageNotReadableException("Delivery needs both a city and a vehicle", inputMessage);
+            }
+            return new Delivery(city, vehicle, timestamp);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid delivery: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Delivery delivery, HttpOutputMessage outputMessage) {
+        throw new HttpMessageNotWritableException("Deliveries are only read");
+    }
+
+    // Lowercase name of a known city, the city as given otherwise
+    private String city(JsonParser parser, JsonToken value, HttpInputMessage inputMessage) throws IOException {
+        if (value != JsonToken.VALUE_STRING) return scalarText(parser, value, inputMessage);
+        String city = cityRegistry.city(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        return city != null ? city : parser.getText();
+    }
+
+    // Lowercase name of a known vehicle type, the vehicle type as given otherwise
+    private String vehicle(JsonParser parser, JsonToken value, HttpInputMessage inputMessage) throws IOException {
+        if (value != JsonToken.VALUE_STRING) return scalarText(parser, value, inputMessage);
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        int code = feeTable.vehicleCode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        return code != FeeTable.UNKNOWN ? feeTable.vehicles().get(code) : parser.getText();
+    }
+
+    // Text of any other scalar value, null for a JSON null
+    private static String scalarText(JsonParser parser, JsonToken value, HttpInputMessage inputMessage) throws IOException {
+        if (value == JsonToken.VALUE_NULL) return null;
+        if (!value.isScalarValue()) throw new HttpMessageNotReadableException("Text expected: " + value, inputMessage);
+        return parser.getText();
+    }
+
+    // Timestamp given as a number or a numeric string, null for a JSON null or a blank string
+    private static Long timestamp(JsonParser parser, JsonToken value, HttpInputMessage inputMessage) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) return parser.getValueAsLong();
+        if (value == JsonToken.VALUE_NULL) return null;
+        if (value == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            try {
+                return text.isEmpty() ? null : Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw new HttpMessageNotReadableException("Timestamp is not a number: " + text, e, inputMessage);
+            }
+        }
+        throw new HttpMessageNotReadableException("Timestamp expected: " + value, inputMessage);
+    }
+}
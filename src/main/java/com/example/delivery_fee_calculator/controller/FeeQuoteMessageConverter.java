@@ -0,0 +1,154 @@
+package com.example.delivery_fee_calculator.controller;
+
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link FeeQuote} response bodies without Jackson databind.
+ * <p>
+ *     The JSON of every known error message is encoded once up front. A fee is written digit by digit, in the same form
+ *     {@link Double#toString} gives, which is what Jackson writes as well. Only fees of whole cents below ten million
+ *     are written this way, anything else, such as an error message not known up front, is left to the ObjectMapper.
+ *     Either way the output is the same as the one of the Jackson converter.
+ * </p>
+ * <p>
+ *     Registered as a bean, so Spring MVC picks it before the Jackson converter for a single quote.
+ *     Other types, such as the list of quotes of {@code /delivery/fees}, are still written by Jackson.
+ * </p>
+ */
+@Component
+public class FeeQuoteMessageConverter extends AbstractHttpMessageConverter<FeeQuote> {
+
+    private static final byte[] FEE_PREFIX = {'{', '"', 'f', 'e', 'e', '"', ':'};
+
+    // Largest amount of cents written digit by digit, Double.toString switches to scientific notation from 10^7
+    private static final long MAX_CENTS = 1_000_000_000L;
+
+    private final ObjectMapper objectMapper;
+
+    // Error message -> its encoded JSON
+    private final Map<String, byte[]> errors;
+
+    /**
+     * Constructs a FeeQuoteMessageConverter encoding the known error messages with the given ObjectMapper.
+     *
+     * @param objectMapper the ObjectMapper bean, also writing the quotes that are not written digit by digit
+     */
+    public FeeQuoteMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.objectMapper = objectMapper;
+        Map<String, byte[]> errors = new HashMap<>();
+        for (String error : List.of(FeeQuote.CITY_NOT_FOUND, FeeQuote.WEATHER_NOT_AVAILABLE, FeeQuote.VEHICLE_FORBIDDEN, FeeQuote.INVALID_JSON)) {
+            errors.put(error, encode(FeeQuote.ofError(error)));
+        }
+        this.errors = Map.copyOf(errors);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return FeeQuote.class == clazz;
+    }
+
+    /**
+     * Only writes quotes, reading is left to Jackson
+     */
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected FeeQuote readInternal(Class<? extends FeeQuote> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Fee quotes are only written", inputMessage);
+    }
+
+    /**
+     * @return Returns the length of the JSON, known up front for all but the quotes written by the ObjectMapper
+     */
+    @Override
+    protected Long getContentLength(FeeQuote quote, MediaType contentType) {
+        byte[] error = error(quote);
+        if (error != null) return (long) error.length;
+        long cents = cents(quote);
+        return cents < 0 ? null : (long) (FEE_PREFIX.length + feeLength(cents) + 1);
+    }
+
+    @Override
+    protected void writeInternal(FeeQuote quote, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        byte[] error = error(quote);
+        long cents = error == null ? cents(quote) : -1;
+        if (error != null) {
+            out.write(error);
+        } else if (cents >= 0) {
+            out.write(FEE_PREFIX);
+            writeFee(out, cents);
+            out.write('}');
+        } else {
+            out.write(encode(quote));
+        }
+    }
+
+    // Encoded JSON of a quote holding only a known error message, null otherwise
+    private byte[] error(FeeQuote quote) {
+        return quote.fee() == null && quote.error() != null ? errors.get(quote.error()) : null;
+    }
+
+    // Whole cents of a quote holding only a fee, -1 if it is not written digit by digit
+    static long cents(FeeQuote quote) {
+        if (quote.fee() == null || quote.error() != null) return -1;
+        double fee = quote.fee();
+        // Also rules out negative zero and NaN
+        if (Double.compare(fee, 0.0) < 0 || !(fee < MAX_CENTS / 100)) return -1;
+        long cents = Math.round(fee * 100);
+        return cents / 100.0 == fee ? cents : -1;
+    }
+
+    // Writes the cents as Double.toString writes their fee: whole units, a point and at least one decimal
+    private static void writeFee(OutputStream out, long cents) throws IOException {
+        long units = cents / 100;
+        int decimals = (int) (cents % 100);
+        for (long divisor = unitsDivisor(units); divisor > 0; divisor /= 10) {
+            out.write('0' + (int) (units / divisor % 10));
+        }
+        out.write('.');
+        out.write('0' + decimals / 10);
+        if (decimals % 10 != 0) out.write('0' + decimals % 10);
+    }
+
+    // Length of the fee of the cents as written by writeFee
+    private static int feeLength(long cents) {
+        int length = 2 + (cents % 10 != 0 ? 1 : 0);
+        for (long divisor = unitsDivisor(cents / 100); divisor > 0; divisor /= 10) length++;
+        return length;
+    }
+
+    // Power of ten of the first digit of the units
+    private static long unitsDivisor(long units) {
+        long divisor = 1;
+        while (units / divisor >= 10) divisor *= 10;
+        return divisor;
+    }
+
+    private byte[] encode(FeeQuote quote) {
+        try {
+            return objectMapper.writeValueAsBytes(quote);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
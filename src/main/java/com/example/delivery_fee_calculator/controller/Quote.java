@@ -0,0 +1,48 @@
+package com.example.delivery_fee_calculator.controller;
+
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Quote of a single delivery, as answered by the {@link DeliveryFeeController}.
+ *
+ * @param feeQuote the calculated fee or an error message
+ * @param eTag ETag of the weather snapshot if the quote is based on the latest weather, otherwise null
+ * @param response response of the quote built up front, so it can be sent any number of times, null if there is none
+ * @param cacheableResponse response of the quote with its cache headers, for GET and HEAD requests only,
+ *                          null if there is none
+ */
+record Quote(FeeQuote feeQuote, String eTag, ResponseEntity<FeeQuote> response, ResponseEntity<FeeQuote> cacheableResponse) {
+
+    /**
+     * Creates a quote that is answered only once, its response is built when needed
+     *
+     * @param feeQuote the calculated fee or an error message
+     * @return quote without an ETag or a response
+     */
+    static Quote of(FeeQuote feeQuote) {
+        return new Quote(feeQuote, null, null, null);
+    }
+
+    /**
+     * Creates a quote with its responses built up front: HTTP 200 with the fee or HTTP 400 with the error message,
+     * once without and once with cache headers if an ETag is given
+     *
+     * @param feeQuote the calculated fee or an error message
+     * @param eTag (Optional) ETag of the weather snapshot
+     * @param cacheControl Cache-Control of the cacheable response, only used with an ETag
+     * @return quote with its responses
+     */
+    static Quote prebuilt(FeeQuote feeQuote, String eTag, CacheControl cacheControl) {
+        ResponseEntity<FeeQuote> response = status(feeQuote).body(feeQuote);
+        ResponseEntity<FeeQuote> cacheableResponse = eTag == null ? response
+                : status(feeQuote).eTag(eTag).cacheControl(cacheControl).body(feeQuote);
+        return new Quote(feeQuote, eTag, response, cacheableResponse);
+    }
+
+    // HTTP 200 for a fee, HTTP 400 for an error message
+    private static ResponseEntity.BodyBuilder status(FeeQuote feeQuote) {
+        return feeQuote.error() == null ? ResponseEntity.ok() : ResponseEntity.badRequest();
+    }
+}
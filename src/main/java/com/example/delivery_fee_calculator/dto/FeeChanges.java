@@ -0,0 +1,13 @@
+package com.example.delivery_fee_calculator.dto;
+
+import java.util.List;
+
+/**
+ * Immutable record representing the delivery fees changed since a version of the fee matrix.
+ *
+ * @param version current version of the fee matrix, to ask for the next changes with
+ * @param full whether the changes hold the whole matrix, as the asked version was unknown or too old
+ * @param changes newest fee or error of every changed city and vehicle pair
+ */
+public record FeeChanges(long version, boolean full, List<FeeUpdate> changes) {
+}
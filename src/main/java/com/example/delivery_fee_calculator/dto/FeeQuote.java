@@ -0,0 +1,36 @@
+package com.example.delivery_fee_calculator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Immutable record representing the outcome of a single delivery fee query.
+ * Contains either the calculated fee or an error message, the missing one is left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FeeQuote(Double fee, String error) {
+
+    public static final String CITY_NOT_FOUND = "City not found";
+    public static final String WEATHER_NOT_AVAILABLE = "Weather data not available";
+    public static final String VEHICLE_FORBIDDEN = "Usage of selected vehicle type is forbidden";
+    public static final String INVALID_JSON = "Invalid request body: please provide a valid JSON";
+
+    /**
+     * Creates a successful quote
+     *
+     * @param fee calculated delivery fee
+     * @return quote containing only the fee
+     */
+    public static FeeQuote ofFee(Double fee) {
+        return new FeeQuote(fee, null);
+    }
+
+    /**
+     * Creates a failed quote
+     *
+     * @param error error message describing why the fee could not be calculated
+     * @return quote containing only the error message
+     */
+    public static FeeQuote ofError(String error) {
+        return new FeeQuote(null, error);
+    }
+}
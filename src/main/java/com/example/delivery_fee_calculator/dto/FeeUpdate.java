@@ -0,0 +1,23 @@
+package com.example.delivery_fee_calculator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Immutable record representing a changed delivery fee of a subscribed city and vehicle pair.
+ * Contains either the calculated fee or an error message, the missing one is left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FeeUpdate(String city, String vehicle, Double fee, String error) {
+
+    /**
+     * Creates an update of the given quote
+     *
+     * @param city city as subscribed
+     * @param vehicle vehicle type as subscribed
+     * @param quote new quote of the pair
+     * @return update containing the fee or the error message of the quote
+     */
+    public static FeeUpdate of(String city, String vehicle, FeeQuote quote) {
+        return new FeeUpdate(city, vehicle, quote.fee(), quote.error());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.delivery_fee_calculator.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing the regional base fee (RBF) of a vehicle type in a city, for storage in the database
+ *
+ * <p>
+ *     Using lombok for reduction of boilerplate code
+ * </p>
+ * <p>
+ *     A city and vehicle type is served only if it has a base fee. City and vehicle type are stored lowercase.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_base_fee_rule_city_vehicle", columnNames = {"city", "vehicle"}))
+public class BaseFeeRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String city;
+
+    @Column(nullable = false)
+    private String vehicle;
+
+    @Column(nullable = false)
+    private Double fee;
+}
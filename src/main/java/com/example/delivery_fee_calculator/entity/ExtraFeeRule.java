@@ -0,0 +1,66 @@
+package com.example.delivery_fee_calculator.entity;
+
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing an extra fee band of a vehicle type, for storage in the database
+ *
+ * <p>
+ *     Using lombok for reduction of boilerplate code
+ * </p>
+ * <p>
+ *     Air temperature (ATEF) and wind speed (WSEF) bands apply when the measured value is within the bounds,
+ *     a missing bound is unbounded. Weather phenomenon (WPEF) bands apply to a {@link PhenomenonClass}.
+ *     Bands of a vehicle type and condition must not overlap, a value outside of all bands costs nothing extra.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+@Entity
+public class ExtraFeeRule {
+
+    /**
+     * Weather condition an extra fee band applies to
+     */
+    public enum Condition {
+        AIR_TEMPERATURE,
+        WIND_SPEED,
+        PHENOMENON
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Lowercase vehicle type
+    @Column(nullable = false)
+    private String vehicle;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "weather_condition", nullable = false)
+    private Condition condition;
+
+    // Bounds of air temperature and wind speed bands, null if unbounded
+    private Double minValue;
+    private boolean minInclusive;
+    private Double maxValue;
+    private boolean maxInclusive;
+
+    // Phenomenon class of phenomenon bands
+    @Enumerated(EnumType.STRING)
+    private PhenomenonClass phenomenon;
+
+    // Extra fee, ignored if usage of the vehicle is forbidden
+    @Column(nullable = false)
+    private Double fee;
+
+    @Column(nullable = false)
+    private boolean forbidden;
+}
@@ -1,5 +1,6 @@
 package com.example.delivery_fee_calculator.entity;
 
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,15 +13,34 @@ import lombok.NoArgsConstructor;
  * <p>
  *     Using lombok for reduction of boilerplate code
  * </p>
+ * <p>
+ *     Records are looked up by station name and newest timestamp first, which is backed by a composite index.
+ *     A station has at most one record per timestamp. Expired records are found by timestamp alone, which is backed
+ *     by an index of its own.
+ * </p>
+ * <p>
+ *     The phenomenon is classified once, when the record is imported, and its {@link PhenomenonClass} is stored as
+ *     a one byte code next to the text. Records stored before the class existed are classified at startup by
+ *     {@link com.example.delivery_fee_calculator.service.PhenomenonClassMigration}, which finds them by the index
+ *     on the class.
+ * </p>
  */
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 @Builder
 @Entity
+@Table(
+        indexes = {
+                @Index(name = "idx_weather_name_timestamp", columnList = "name, timestamp DESC"),
+                @Index(name = "idx_weather_timestamp", columnList = "timestamp"),
+                @Index(name = "idx_weather_phenomenon_class", columnList = "phenomenon_class")},
+        uniqueConstraints = @UniqueConstraint(name = "uk_weather_name_timestamp", columnNames = {"name", "timestamp"}))
 public class Weather {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    // Pooled sequence, one round-trip hands out ids for a whole insert batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_seq")
+    @SequenceGenerator(name = "weather_seq", sequenceName = "weather_seq", allocationSize = 50)
     @Column(unique = true, nullable = false)
     private long id;
 
@@ -40,6 +60,26 @@ public class Weather {
     @Column(nullable = false)
     private String phenomenon;
 
+    // Class of the phenomenon, stored by ordinal, null only for records not yet migrated
+    @Enumerated(EnumType.ORDINAL)
+    private PhenomenonClass phenomenonClass;
+
     @Column(nullable = false)
     private Long timestamp;
+
+    /**
+     * Gets the class of the phenomenon
+     *
+     * @return Returns the stored class, or the class of the phenomenon text if none is stored yet
+     */
+    public PhenomenonClass getPhenomenonClass() {
+        return phenomenonClass != null ? phenomenonClass : PhenomenonClass.classify(phenomenon);
+    }
+
+    // Classifies records saved without a class, e.g. ones built outside of the import
+    @PrePersist
+    @PreUpdate
+    void classifyPhenomenon() {
+        if (phenomenonClass == null) phenomenonClass = PhenomenonClass.classify(phenomenon);
+    }
 }
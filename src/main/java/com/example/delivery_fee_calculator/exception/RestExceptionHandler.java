@@ -1,28 +1,27 @@
 package com.example.delivery_fee_calculator.exception;
 
+import com.example.delivery_fee_calculator.dto.FeeQuote;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Global REST exception handler that manages error responses.
  */
 @RestControllerAdvice
 public class RestExceptionHandler {
 
+    // The same error every time, written from its encoded JSON
+    private static final FeeQuote INVALID_JSON = FeeQuote.ofError(FeeQuote.INVALID_JSON);
+
     /**
      * Handles malformed JSON requests or missing/wrong fields.
      *
      * @return Returns HTTP 400 (bad request) with an error message
      */
     @ExceptionHandler(HttpMessageNotReadableException.class)
-    public ResponseEntity<Map<String, String>> handleInvalidJson(HttpMessageNotReadableException ex) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Invalid request body: please provide a valid JSON");
-        return ResponseEntity.badRequest().body(error);
+    public ResponseEntity<FeeQuote> handleInvalidJson(HttpMessageNotReadableException ex) {
+        return ResponseEntity.badRequest().body(INVALID_JSON);
     }
 }
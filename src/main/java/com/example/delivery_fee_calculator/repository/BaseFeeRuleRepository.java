@@ -0,0 +1,12 @@
+package com.example.delivery_fee_calculator.repository;
+
+import com.example.delivery_fee_calculator.entity.BaseFeeRule;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Interface extending CrudRepository, for database operations of the "BaseFeeRule" entity
+ */
+@Repository
+public interface BaseFeeRuleRepository extends CrudRepository<BaseFeeRule, Long> {
+}
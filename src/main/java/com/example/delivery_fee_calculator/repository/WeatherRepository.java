@@ -1,11 +1,16 @@
 package com.example.delivery_fee_calculator.repository;
 
 import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -23,6 +28,45 @@ public interface WeatherRepository extends CrudRepository<Weather, Long> {
     @Query("SELECT w from Weather w WHERE w.name = :name ORDER BY w.timestamp DESC")
     List<Weather> findByNameOrderByTimestampDesc(@Param("name") String name);
 
+    /**
+     * Filters by station name and orders by timestamp descending, returning at most the given amount of records
+     *
+     * <p>
+     *     Ordering also by name (fixed by the filter) lets the database read the records straight from the
+     *     (name, timestamp DESC) index instead of sorting the whole history of the station
+     * </p>
+     *
+     * @param name Given station name for filtering
+     * @param limit Maximum amount of records returned
+     * @return Returns a list of the newest Weather entities of the station, ordered by timestamp descending
+     */
+    @Query("SELECT w from Weather w WHERE w.name = :name ORDER BY w.name, w.timestamp DESC")
+    List<Weather> findLatestByName(@Param("name") String name, Limit limit);
+
+    /**
+     * Filters by station name and observations at or before given timestamp, ordered by timestamp descending,
+     * returning at most the given amount of records
+     *
+     * @param name Given station name for filtering
+     * @param timestamp Given point in time
+     * @param limit Maximum amount of records returned
+     * @return Returns a list of Weather entities in effect at the given timestamp, newest first
+     */
+    @Query("SELECT w from Weather w WHERE w.name = :name and w.timestamp <= :timestamp ORDER BY w.name, w.timestamp DESC")
+    List<Weather> findLatestByNameAtOrBefore(@Param("name") String name, @Param("timestamp") Long timestamp, Limit limit);
+
+    /**
+     * Filters by station name and observations after the first and at or before the second timestamp,
+     * ordered by timestamp ascending
+     *
+     * @param name Given station name for filtering
+     * @param after Records observed after this timestamp are found
+     * @param until Records observed at or before this timestamp are found
+     * @return Returns a list of Weather entities observed within the period, oldest first
+     */
+    @Query("SELECT w from Weather w WHERE w.name = :name and w.timestamp > :after and w.timestamp <= :until ORDER BY w.name, w.timestamp")
+    List<Weather> findByNameBetween(@Param("name") String name, @Param("after") Long after, @Param("until") Long until);
+
     /**
      * Filters by station name and timestamp
      *
@@ -32,4 +76,99 @@ public interface WeatherRepository extends CrudRepository<Weather, Long> {
      */
     @Query("SELECT w from Weather w WHERE w.name = :name and w.timestamp= :timestamp")
     Weather findByNameAndTimestamp(@Param("name") String name, @Param("timestamp") Long timestamp);
+
+    /**
+     * Finds which of the given timestamps are already stored for a station
+     *
+     * @param name Given station name for filtering
+     * @param timestamps Given timestamps to look for
+     * @return Returns the subset of given timestamps that have a Weather entity for the station
+     */
+    @Query("SELECT w.timestamp from Weather w WHERE w.name = :name and w.timestamp IN :timestamps")
+    List<Long> findStoredTimestamps(@Param("name") String name, @Param("timestamps") Collection<Long> timestamps);
+
+    /**
+     * Finds the newest weather record of every station
+     *
+     * <p>
+     *     Grouped in a single pass, a per-row correlated subquery grows quadratically with the amount of stored records.
+     *     Databases created before the unique (name, timestamp) constraint may hold several records of a station at
+     *     its newest timestamp, of which the one stored last is found
+     * </p>
+     *
+     * @return Returns a list with the latest Weather entity of each station, one per station
+     */
+    @Query("""
+            SELECT w from Weather w WHERE w.id IN (SELECT MAX(l.id) from Weather l
+                WHERE (l.name, l.timestamp) IN (SELECT m.name, MAX(m.timestamp) from Weather m GROUP BY m.name)
+                GROUP BY l.name)""")
+    List<Weather> findLatestOfEachStation();
+
+    /**
+     * Finds records observed before the given timestamp that are not the newest record of their station,
+     * oldest first, returning at most the given amount of ids
+     *
+     * @param before Records observed before this timestamp are found
+     * @param limit Maximum amount of ids returned
+     * @return Returns ids of the expired Weather entities
+     */
+    @Query("""
+            SELECT w.id from Weather w WHERE w.timestamp < :before
+            and EXISTS (SELECT 1 from Weather n WHERE n.name = w.name and n.timestamp > w.timestamp)
+            ORDER BY w.timestamp""")
+    List<Long> findExpiredIds(@Param("before") Long before, Limit limit);
+
+    /**
+     * Finds records observed before the given timestamp that are preceded by another record of their station
+     * within the same bucket, oldest first, returning at most the given amount of ids.
+     * The newest record of a station is never found.
+     *
+     * <p>
+     *     Buckets are aligned to multiples of their length since the epoch, so removing the found records
+     *     leaves the first record of every station and bucket
+     * </p>
+     *
+     * @param before Records observed before this timestamp are found
+     * @param bucket Length of a bucket, in seconds
+     * @param limit Maximum amount of ids returned
+     * @return Returns ids of the Weather entities superseded within their bucket
+     */
+    @Query("""
+            SELECT w.id from Weather w WHERE w.timestamp < :before
+            and EXISTS (SELECT 1 from Weather e WHERE e.name = w.name
+                and e.timestamp >= w.timestamp - MOD(w.timestamp, :bucket) and e.timestamp < w.timestamp)
+            and EXISTS (SELECT 1 from Weather n WHERE n.name = w.name and n.timestamp > w.timestamp)
+            ORDER BY w.timestamp""")
+    List<Long> findDownsampledIds(@Param("before") Long before, @Param("bucket") Long bucket, Limit limit);
+
+    /**
+     * Finds the distinct phenomena of records that have no phenomenon class stored
+     *
+     * @return Returns the phenomenon texts of the unclassified Weather entities
+     */
+    @Query("SELECT DISTINCT w.phenomenon from Weather w WHERE w.phenomenonClass IS NULL")
+    List<String> findUnclassifiedPhenomena();
+
+    /**
+     * Stores the class of a phenomenon on every record of the phenomenon that has none, in its own transaction
+     *
+     * @param phenomenon Phenomenon text of the records
+     * @param phenomenonClass Class of the phenomenon
+     * @return Returns amount of updated records
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Weather w SET w.phenomenonClass = :phenomenonClass WHERE w.phenomenon = :phenomenon and w.phenomenonClass IS NULL")
+    int classifyPhenomenon(@Param("phenomenon") String phenomenon, @Param("phenomenonClass") PhenomenonClass phenomenonClass);
+
+    /**
+     * Deletes the records with the given ids in its own transaction
+     *
+     * @param ids Ids of the Weather entities to delete
+     * @return Returns amount of deleted records
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE from Weather w WHERE w.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
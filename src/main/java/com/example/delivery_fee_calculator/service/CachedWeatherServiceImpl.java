@@ -0,0 +1,201 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Weather service that keeps the newest weather record of every station in memory.
+ * <p>
+ *     Latest weather lookups are answered from an immutable snapshot, which is swapped atomically whenever
+ *     a newer record is saved. The snapshot is warmed from the database at startup, so the latest weather
+ *     path never touches the database. All other operations are delegated to {@link WeatherServiceImpl}.
+ * </p>
+ * <p>
+ *     Every new snapshot after startup is published as a {@link WeatherSnapshotChangedEvent}. The warm-up is not,
+ *     listeners build on the context refresh instead.
+ * </p>
+ */
+@Primary
+@Profile("!mapped") // The mapped profile stores weather outside of the database
+@Service
+public class CachedWeatherServiceImpl implements WeatherService {
+
+    private final WeatherServiceImpl weatherServiceImpl;
+
+    private final WeatherRepository weatherRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Station name -> newest weather record, replaced as a whole and never modified in place
+    private final AtomicReference<Map<String, Weather>> latestByStation = new AtomicReference<>(Map.of());
+
+    /**
+     * Constructs a CachedWeatherServiceImpl with the given WeatherServiceImpl and WeatherRepository.
+     *
+     * @param weatherServiceImpl the database backed WeatherService that operations are delegated to
+     * @param weatherRepository the WeatherRepository bean used for warming up the snapshot
+     * @param eventPublisher publisher of the snapshot changes
+     */
+    public CachedWeatherServiceImpl(WeatherServiceImpl weatherServiceImpl, WeatherRepository weatherRepository,
+                                    ApplicationEventPublisher eventPublisher) {
+        this.weatherServiceImpl = weatherServiceImpl;
+        this.weatherRepository = weatherRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void warmUp() {
+        reload();
+    }
+
+    /**
+     * Reloads the snapshot with the newest weather record of every station stored in the database.
+     * <p>
+     *     Can be called when database was changed outside of this service. Records published while the database
+     *     is read are kept when they are newer than the stored ones.
+     * </p>
+     */
+    public void refresh() {
+        Map<String, Weather> next = reload();
+        if (next != null) eventPublisher.publishEvent(new WeatherSnapshotChangedEvent(next));
+    }
+
+    /**
+     * Saves weather information into database and publishes it to the snapshot if it is the newest for its station
+     *
+     * @param weather weather information object for saving
+     */
+    @Override
+    public void saveWeather(Weather weather) {
+        weatherServiceImpl.saveWeather(weather);
+        publish(List.of(weather));
+    }
+
+    /**
+     * Saves many weather information objects into database in a single transaction, skipping already stored ones,
+     * and publishes the newest stored of each station to the snapshot in one swap
+     *
+     * @param weatherList weather information objects for saving
+     * @return Returns the weather information objects that were stored
+     */
+    @Override
+    public List<Weather> saveAllWeather(List<Weather> weatherList) {
+        List<Weather> storedWeatherList = weatherServiceImpl.saveAllWeather(weatherList);
+        publish(storedWeatherList);
+        return storedWeatherList;
+    }
+
+    /**
+     * Gets all weather information of specific station, ordered by timestamp descending order
+     *
+     * @param station Takes station name as input
+     * @return Returns list of Weather entities
+     */
+    @Override
+    public List<Weather> fetchWeatherByStation(String station) {
+        return weatherServiceImpl.fetchWeatherByStation(station);
+    }
+
+    /**
+     * Gets the newest weather information of specific station from the in-memory snapshot
+     *
+     * @param station Takes station name as input
+     * @return Returns the latest Weather entity, null if the station has no records
+     */
+    @Override
+    public Weather fetchLatestWeatherByStation(String station) {
+        return latestByStation.get().get(station);
+    }
+
+    /**
+     * Gets weather information of specific station and timestamp
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return Returns a Weather entity
+     */
+    @Override
+    public Weather fetchWeatherByStationAndTimestamp(String station, Long timestamp) {
+        return weatherServiceImpl.fetchWeatherByStationAndTimestamp(station, timestamp);
+    }
+
+    /**
+     * Gets the newest weather information of specific station observed at or before given timestamp
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return Returns a Weather entity, null if there is none
+     */
+    @Override
+    public Weather fetchWeatherByStationAtTime(String station, Long timestamp) {
+        return weatherServiceImpl.fetchWeatherByStationAtTime(station, timestamp);
+    }
+
+    /**
+     * Gets the weather information of specific station in effect during a period
+     *
+     * @param station takes station name as input
+     * @param from start of the period
+     * @param until end of the period, inclusive
+     * @return Returns list of Weather entities, oldest first
+     */
+    @Override
+    public List<Weather> fetchWeatherByStationDuring(String station, Long from, Long until) {
+        return weatherServiceImpl.fetchWeatherByStationDuring(station, from, until);
+    }
+
+    // Swaps in a new snapshot containing the given weather, except where the snapshot already holds a newer one
+    private void publish(List<Weather> weatherList) {
+        Map<String, Weather> current;
+        Map<String, Weather> next;
+        do {
+            current = latestByStation.get();
+            Map<String, Weather> snapshot = new HashMap<>(current);
+            for (Weather weather : weatherList) {
+                snapshot.merge(weather.getName(), weather, CachedWeatherServiceImpl::newer);
+            }
+            next = snapshot.equals(current) ? current : Map.copyOf(snapshot);
+        } while (!latestByStation.compareAndSet(current, next));
+
+        if (next != current) eventPublisher.publishEvent(new WeatherSnapshotChangedEvent(next));
+    }
+
+    // Swaps in the newest stored records merged with the ones published during the read, returns null if unchanged
+    private Map<String, Weather> reload() {
+        Map<String, Weather> before = latestByStation.get();
+        List<Weather> stored = weatherRepository.findLatestOfEachStation();
+
+        Map<String, Weather> current;
+        Map<String, Weather> next;
+        do {
+            current = latestByStation.get();
+            Map<String, Weather> snapshot = new HashMap<>();
+            for (Weather weather : stored) {
+                snapshot.merge(weather.getName(), weather, CachedWeatherServiceImpl::newer);
+            }
+            for (Weather weather : current.values()) {
+                if (before.get(weather.getName()) != weather) {
+                    snapshot.merge(weather.getName(), weather, CachedWeatherServiceImpl::newer);
+                }
+            }
+            next = snapshot.equals(current) ? current : Map.copyOf(snapshot);
+        } while (!latestByStation.compareAndSet(current, next));
+
+        return next != current ? next : null;
+    }
+
+    // Returns the weather with the later timestamp, on a tie the first one
+    private static Weather newer(Weather first, Weather second) {
+        return second.getTimestamp() > first.getTimestamp() ? second : first;
+    }
+}
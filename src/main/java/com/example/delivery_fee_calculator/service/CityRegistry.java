@@ -0,0 +1,114 @@
+package com.example.delivery_fee_calculator.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Registry of the cities deliveries are quoted for, and the weather station observing each of them.
+ *
+ * <p>
+ *     Cities are configured in application.properties, loaded once at startup and never changed afterward, key in use:
+ *     {@code delivery.cities[i].name} and {@code delivery.cities[i].station}. Adding a city needs no code changes,
+ *     only its entry here and its business rules. Several cities may share a station.
+ * </p>
+ * <p>
+ *     Cities are looked up in a {@link TokenTable}, ignoring case and surrounding whitespace, without any allocation.
+ * </p>
+ */
+@ConfigurationProperties(prefix = "delivery")
+public class CityRegistry {
+
+    // Lower case city names, and the weather station observing each of them by the index of the city
+    private final TokenTable cityTable;
+    private final String[] stationByCity;
+
+    private final Set<String> cities;
+
+    // Names of all weather stations observing a city
+    private final Set<String> stations;
+
+    /**
+     * Constructs a CityRegistry of the given cities.
+     *
+     * @param cities cities and their weather stations, bound from {@code delivery.cities}
+     * @throws IllegalArgumentException if a city is given twice or misses its name or station
+     */
+    public CityRegistry(List<City> cities) {
+        Set<String> names = new LinkedHashSet<>();
+        List<String> stations = new ArrayList<>();
+        for (City city : cities == null ? List.<City>of() : cities) {
+            if (city.name() == null || city.name().isBlank() || city.station() == null || city.station().isBlank()) {
+                throw new IllegalArgumentException("City needs both a name and a station: " + city);
+            }
+            if (!names.add(normalize(city.name()))) {
+                throw new IllegalArgumentException("City configured twice: " + city.name());
+            }
+            stations.add(city.station().trim());
+        }
+        this.cityTable = TokenTable.of(List.copyOf(names));
+        this.stationByCity = stations.toArray(String[]::new);
+        this.cities = Set.copyOf(names);
+        this.stations = Set.copyOf(stations);
+    }
+
+    /**
+     * Gets the weather station observing a city
+     *
+     * @param city city name, matched ignoring case and surrounding whitespace
+     * @return Returns the station name, null if the city is not known
+     */
+    public String station(String city) {
+        int index = cityTable.indexOf(city);
+        return index == TokenTable.UNKNOWN ? null : stationByCity[index];
+    }
+
+    /**
+     * Gets the lower case name of a city given as a range of a character array, e.g. straight from a request parser
+     *
+     * @param chars characters holding the city name
+     * @param offset start of the city name
+     * @param length length of the city name
+     * @return Returns the lower case city name, null if the city is not known
+     */
+    public String city(char[] chars, int offset, int length) {
+        int index = cityTable.indexOf(chars, offset, length);
+        return index == TokenTable.UNKNOWN ? null : cityTable.token(index);
+    }
+
+    /**
+     * Gets the names of all weather stations observing a known city
+     *
+     * @return Returns an immutable set of station names
+     */
+    public Set<String> stations() {
+        return stations;
+    }
+
+    /**
+     * Gets the names of all known cities
+     *
+     * @return Returns an immutable set of lower case city names
+     */
+    public Set<String> cities() {
+        return cities;
+    }
+
+    // Lower case, trimmed name, the form cities are looked up by
+    private static String normalize(String city) {
+        return city.toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * City deliveries are quoted for.
+     *
+     * @param name city name, matched case-insensitively
+     * @param station name of the weather station observing the city, as in the observations feed
+     */
+    public record City(String name, String station) {
+    }
+}
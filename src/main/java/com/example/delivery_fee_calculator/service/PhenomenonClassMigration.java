@@ -0,0 +1,61 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the phenomenon class of weather records that were saved before the class was stored, at startup.
+ *
+ * <p>
+ *     Records are updated by phenomenon, one statement per distinct phenomenon, and there are only a few dozen of
+ *     them. Runs before the other startup jobs, and does nothing once every record is classified. Unclassified
+ *     records are found by the index on the class, so the check does not scan the table, it can be turned off with
+ *     {@code weather.migration.phenomenon-class=false} to skip it.
+ * </p>
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(value = "weather.migration.phenomenon-class", matchIfMissing = true)
+public class PhenomenonClassMigration implements ApplicationRunner {
+
+    private final WeatherRepository weatherRepository;
+
+    /**
+     * Constructs a PhenomenonClassMigration with the given WeatherRepository.
+     *
+     * @param weatherRepository the WeatherRepository bean injected by Spring
+     */
+    public PhenomenonClassMigration(WeatherRepository weatherRepository) {
+        this.weatherRepository = weatherRepository;
+    }
+
+    /**
+     * Runs the migration once the application has started
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate();
+    }
+
+    /**
+     * Classifies every record that has no phenomenon class stored
+     *
+     * @return Returns amount of updated records
+     */
+    public int migrate() {
+        int updated = 0;
+        for (String phenomenon : weatherRepository.findUnclassifiedPhenomena()) {
+            updated += weatherRepository.classifyPhenomenon(phenomenon, PhenomenonClass.classify(phenomenon));
+        }
+        if (updated > 0) log.info("Phenomenon class stored on {} weather records", updated);
+        return updated;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.delivery_fee_calculator.service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable lookup table of a few known tokens, such as city names or vehicle types.
+ *
+ * <p>
+ *     Text is matched ignoring case and surrounding whitespace, the way {@code text.toLowerCase().trim()} would match,
+ *     but character by character and without creating the lowercase copy. Text can be looked up as a String or as a
+ *     range of a character array, e.g. straight from the buffer of a JSON parser, so a lookup never allocates.
+ *     An open addressing hash table of the token indexes is used, sized to at most half full.
+ * </p>
+ */
+public final class TokenTable {
+
+    /** Index of a text that is not a token */
+    public static final int UNKNOWN = -1;
+
+    // Lower case, trimmed tokens in the order of their indexes
+    private final String[] tokens;
+
+    // Slots of the hash table, token index + 1, 0 for an empty slot
+    private final int[] slots;
+
+    private final int mask;
+
+    private TokenTable(String[] tokens) {
+        this.tokens = tokens;
+        int capacity = Integer.highestOneBit(Math.max(1, tokens.length) * 4 - 1);
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < tokens.length; i++) {
+            int slot = hash(tokens[i], 0, tokens[i].length()) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Creates a table of the given tokens, the index of a token is its position in the list
+     *
+     * @param tokens distinct tokens, lowercase and trimmed
+     * @return the table
+     * @throws IllegalArgumentException if a token is given twice or is not lowercase and trimmed
+     */
+    public static TokenTable of(List<String> tokens) {
+        TokenTable table = new TokenTable(tokens.toArray(String[]::new));
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (!token.equals(token.toLowerCase(Locale.ROOT).trim())) {
+                throw new IllegalArgumentException("Token is not lowercase and trimmed: " + token);
+            }
+            if (table.indexOf(token) != i) throw new IllegalArgumentException("Token given twice: " + token);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the index of a token
+     *
+     * @param text text to look up, matched ignoring case and surrounding whitespace
+     * @return Returns the index of the token, UNKNOWN if the text is not a token
+     */
+    public int indexOf(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        for (int slot = hash(text, start, end) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            String token = tokens[slots[slot] - 1];
+            if (token.length() == end - start && matches(token, text, start)) return slots[slot] - 1;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Gets the index of a token given as a range of a character array
+     *
+     * @param chars characters holding the text
+     * @param offset start of the text
+     * @param length length of the text
+     * @return Returns the index of the token, UNKNOWN if the text is not a token
+     */
+    public int indexOf(char[] chars, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && chars[start] <= ' ') start++;
+        while (end > start && chars[end - 1] <= ' ') end--;
+
+        for (int slot = hash(chars, start, end) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            String token = tokens[slots[slot] - 1];
+            if (token.length() == end - start && matches(token, chars, start)) return slots[slot] - 1;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @param index index of a token
+     * @return Returns the token, lowercase and trimmed
+     */
+    public String token(int index) {
+        return tokens[index];
+    }
+
+    /**
+     * @return Returns amount of tokens
+     */
+    public int size() {
+        return tokens.length;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        return spread(hash);
+    }
+
+    private static int hash(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + Character.toLowerCase(chars[i]);
+        return spread(hash);
+    }
+
+    // Mixes the high bits into the low ones, which pick the slot
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String token, CharSequence text, int start) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != token.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String token, char[] chars, int start) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.toLowerCase(chars[start + i]) != token.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.delivery_fee_calculator.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Backfills historical weather data from a directory of archived observations XML files at startup.
+ *
+ * <p>
+ *     Only active when the directory is configured, e.g. {@code --weather.backfill.directory=./archive}
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("weather.backfill.directory")
+public class WeatherBackfillRunner implements ApplicationRunner {
+
+    private final WeatherImportService weatherImportService;
+
+    private final Path directory;
+
+    /**
+     * Constructs a WeatherBackfillRunner with the given WeatherImportService and archive directory.
+     *
+     * @param weatherImportService the WeatherImportService bean injected by Spring
+     * @param directory the archive directory, key in use: {@code weather.backfill.directory}
+     */
+    public WeatherBackfillRunner(WeatherImportService weatherImportService, @Value("${weather.backfill.directory}") Path directory) {
+        this.weatherImportService = weatherImportService;
+        this.directory = directory;
+    }
+
+    /**
+     * Runs the backfill once the application has started
+     */
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.nanoTime();
+        int stored = weatherImportService.importArchive(directory);
+        log.info("Backfill finished, {} records stored in {} ms", stored, (System.nanoTime() - start) / 1_000_000);
+    }
+}
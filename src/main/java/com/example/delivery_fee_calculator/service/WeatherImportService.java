@@ -1,38 +1,117 @@
 package com.example.delivery_fee_calculator.service;
 
 import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Document;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service that imports weather information from the weather portal, every certain given time
  */
+@Slf4j
 @Service
 public class WeatherImportService {
 
+    // Records stored per transaction when importing an archive
+    private static final int BACKFILL_BATCH_SIZE = 5000;
+
     private final WeatherService weatherService;
 
+    // Observations we care about, the stations of the known cities
+    private final Set<String> stations;
+
+    // Built on the first import, building it sets up TLS, which is not needed to start serving quotes
+    private volatile HttpClient httpClient;
+
+    private final Duration connectTimeout;
+
+    private final URI feedUrl;
+
+    private final Duration readTimeout;
+
+    // Durations of the import phases, tagged by phase
+    private final Timer fetchTimer;
+    private final Timer parseTimer;
+    private final Timer persistTimer;
+
+    // Validators of the last imported feed response, sent back so an unchanged feed is not downloaded again
+    private volatile String lastETag;
+    private volatile String lastModified;
+
     /**
-     * Constructs a WeatherServiceImpl with the given WeatherService.
+     * Constructs a WeatherImportService with the given WeatherService, CityRegistry and feed settings.
      * <p>
-     *     Spring Boot will automatically inject the WeatherService bean via constructor injection.
+     *     Spring Boot will automatically inject the WeatherService and CityRegistry beans via constructor injection.
+     *     The feed settings are read from application.properties, keys in use: {@code weather.import.url},
+     *     {@code weather.import.connect-timeout} and {@code weather.import.read-timeout}
+     * </p>
+     * <p>
+     *     Registers the {@code weather.import} timer, tagged by phase (fetch, parse, persist), and the
+     *     {@code weather.staleness} gauge, the age of the newest stored record of every imported station.
      * </p>
      *
-     * @param weatherService the WeatherRepository bean injected by Spring
+     * @param weatherService the WeatherService bean injected by Spring
+     * @param cityRegistry the CityRegistry bean, observations of its stations are imported
+     * @param meterRegistry the MeterRegistry bean the import metrics are registered in
+     * @param feedUrl URL of the observations XML feed
+     * @param connectTimeout how long to wait for a connection to the feed
+     * @param readTimeout how long to wait for the whole feed response, body included
      */
-    public WeatherImportService(WeatherService weatherService) {
+    public WeatherImportService(WeatherService weatherService,
+                                CityRegistry cityRegistry,
+                                MeterRegistry meterRegistry,
+                                @Value("${weather.import.url}") URI feedUrl,
+                                @Value("${weather.import.connect-timeout}") Duration connectTimeout,
+                                @Value("${weather.import.read-timeout}") Duration readTimeout) {
         this.weatherService = weatherService;
+        this.stations = cityRegistry.stations();
+        this.feedUrl = feedUrl;
+        this.readTimeout = readTimeout;
+        this.connectTimeout = connectTimeout;
+
+        this.fetchTimer = importTimer(meterRegistry, "fetch");
+        this.parseTimer = importTimer(meterRegistry, "parse");
+        this.persistTimer = importTimer(meterRegistry, "persist");
+        for (String station : stations) {
+            TimeGauge.builder("weather.staleness", weatherService, TimeUnit.SECONDS, service -> staleness(service, station))
+                    .description("Time since the observation of the newest stored weather record")
+                    .tag("station", station)
+                    .register(meterRegistry);
+        }
     }
 
     /**
@@ -53,104 +132,324 @@ public class WeatherImportService {
      * Reads data from weather portal of the Estonian Environment Agency and saves it into database
      *
      * <p>
-     *     Currently saves only "Tallinn-Harku", "Tartu-Tõravere", "Pärnu" observations
+     *     Saves only observations of the stations in the {@link CityRegistry}. The feed is requested
+     *     conditionally, if it has not changed since the last import nothing is downloaded. A feed that does not
+     *     answer within the timeouts is given up on until the next trigger.
      * </p>
      */
     private void importWeatherData() {
-        System.out.println("ImportWeatherData triggered at " + java.time.LocalDateTime.now());
+        log.info("Weather import triggered, fetching {}", feedUrl);
         try {
-            System.out.println("Fetching XML data...");
 
-            // Since URL is deprecated, Will use URI instead
-            URL url = URI.create("https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php").toURL();
+            HttpRequest.Builder request = HttpRequest.newBuilder(feedUrl).GET();
+            String eTag = lastETag;
+            String modified = lastModified;
+            if (eTag != null) request.header("If-None-Match", eTag);
+            if (modified != null) request.header("If-Modified-Since", modified);
 
-            try (InputStream in = url.openStream()) {
-                // Extracts XML root from the URL given
-                Element root = parseXML(in);
+            // The whole exchange, body included, must finish within the read timeout
+            Timer.Sample fetch = Timer.start();
+            CompletableFuture<HttpResponse<byte[]>> exchange =
+                    httpClient().sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> response;
+            try {
+                response = exchange.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                exchange.cancel(true);
+                log.warn("Weather feed did not respond within {}, skipped", readTimeout);
+                return;
+            } finally {
+                fetch.stop(fetchTimer);
+            }
 
-                // Return early if root was null
-                if (root == null) return;
+            if (response.statusCode() == 304) {
+                log.info("Weather feed not modified since last import");
+                return;
+            }
+            if (response.statusCode() != 200) {
+                log.warn("Weather feed responded with status {}", response.statusCode());
+                return;
+            }
+            importObservations(new ByteArrayInputStream(response.body()));
 
-                // List of station element nodes
-                NodeList nodeList = root.getElementsByTagName("station");
+            // Remembered only once the snapshot is imported, so a failed import is retried in full
+            lastETag = response.headers().firstValue("ETag").orElse(null);
+            lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e){
+            log.error("Weather import failed", e);
+        }
+    }
 
-                // Retrieve the "timestamp" attribute
-                Long timestamp = Long.valueOf(root.getAttribute("timestamp"));
+    /**
+     * Imports an observations XML snapshot from the provided InputStream into database
+     *
+     * <p>
+     *     Import is idempotent: if every station we care about already has a record at or after the timestamp of
+     *     the snapshot, the stations are not parsed at all, otherwise already stored records are skipped.
+     * </p>
+     *
+     * @param inputStream InputStream that contains observations XML
+     * @return Weather objects that were stored
+     * @throws XMLStreamException if the XML is malformed
+     */
+    public List<Weather> importObservations(InputStream inputStream) throws XMLStreamException {
+        Timer.Sample parse = Timer.start();
+        List<Weather> observations;
+        Long timestamp;
+        XMLStreamReader reader = XmlInput.FACTORY.createXMLStreamReader(inputStream);
+        try {
+            timestamp = readTimestamp(reader);
 
-                // List of observations we care about
-                final List<String> allowedList = List.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu");
+            // Return early if this snapshot was already imported
+            if (isImported(timestamp)) {
+                log.info("Weather information already imported, timestamp: {}", timestamp);
+                return List.of();
+            }
 
+            // Extracts observations of the stations we care about
+            observations = readStations(reader, timestamp, stations);
+        } finally {
+            reader.close();
+            parse.stop(parseTimer);
+        }
 
-                for (int i = 0; i < nodeList.getLength(); i++) {
-                    Node node = nodeList.item(i);
-                    if (node.getNodeType() == Node.ELEMENT_NODE) {
-                        Element element = (Element) node;
+        // Saves them into DB in one transaction
+        List<Weather> storedWeatherList = persistTimer.record(() -> weatherService.saveAllWeather(observations));
+        log.info("Saved weather information, timestamp: {}, stations: {}", timestamp, storedWeatherList.size());
+        return storedWeatherList;
+    }
 
-                        String name = getElementText(element, "name");
+    /**
+     * Imports a directory of archived observations XML files into database, for backfilling history
+     *
+     * <p>
+     *     Files are parsed in parallel on all cores, while the calling thread stores the parsed records in large
+     *     batches, one transaction per batch. Parsers wait when storing falls behind, so memory stays bounded.
+     *     Files with a snapshot timestamp seen before are skipped and already stored records are never stored again.
+     *     Progress is reported after every stored batch.
+     * </p>
+     *
+     * @param directory directory containing observations XML files ({@code *.xml})
+     * @return amount of stored weather records
+     * @throws IOException if the directory can not be listed
+     * @throws InterruptedException if interrupted while waiting for parsers
+     * @throws IllegalStateException if a parser failed other than on an unreadable file, nothing more is stored then
+     */
+    public int importArchive(Path directory) throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.xml")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        log.info("Backfill of {} files from {} started", files.size(), directory);
 
-                        if (allowedList.contains(name)) {
-                            // Read observation data safely
+        int parsers = Runtime.getRuntime().availableProcessors();
+        Set<Long> seenTimestamps = ConcurrentHashMap.newKeySet();
+        BlockingQueue<ParsedFile> parsedFiles = new ArrayBlockingQueue<>(parsers * 4);
+        ExecutorService executor = Executors.newFixedThreadPool(parsers);
+        try {
+            for (Path file : files) {
+                executor.execute(() -> {
+                    // Handed over whatever happens, errors included, otherwise the storing thread waits for it forever
+                    ParsedFile parsed;
+                    try {
+                        parsed = new ParsedFile(file, parseArchiveFile(file, seenTimestamps, stations), null);
+                    } catch (Throwable e) {
+                        parsed = new ParsedFile(file, List.of(), e);
+                    }
+                    try {
+                        parsedFiles.put(parsed);
+                    } catch (InterruptedException e) {
+                        // Only interrupted once the storing thread stopped waiting
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
 
-                            String wmo = getElementText(element, "wmocode");
-                            Double airtemperature = Double.valueOf(getElementText(element, "airtemperature"));
-                            Double windspeed = Double.valueOf(getElementText(element, "windspeed"));
-                            String phenomenon = getElementText(element, "phenomenon");
+            // Every file hands over exactly one result, possibly empty or failed
+            int stored = 0;
+            List<Weather> batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+            for (int done = 1; done <= files.size(); done++) {
+                ParsedFile parsed = parsedFiles.take();
+                if (parsed.failure() != null) {
+                    throw new IllegalStateException("Backfill stopped, parsing " + parsed.file() + " failed", parsed.failure());
+                }
+                batch.addAll(parsed.records());
+                if (batch.size() >= BACKFILL_BATCH_SIZE || done == files.size()) {
+                    stored += weatherService.saveAllWeather(batch).size();
+                    batch.clear();
+                    log.info("Backfill progress: {}/{} files, {} records stored", done, files.size(), stored);
+                }
+            }
+            return stored;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                            // Create a Weather object
-                            Weather weather = new Weather();
-                            weather.setTimestamp(timestamp);
-                            weather.setName(name);
-                            weather.setWmo(wmo);
-                            weather.setTemp(airtemperature);
-                            weather.setWind(windspeed);
-                            weather.setPhenomenon(phenomenon);
+    // Records parsed from an archived observations file, or why the parser failed
+    private record ParsedFile(Path file, List<Weather> records, Throwable failure) {
+    }
 
-                            // Save information into DB
-                            weatherService.saveWeather(weather);
-                        }
-                    }
-                }
-                System.out.println("Saved weather information, timestamp: " + timestamp);
+    // Parses an archived observations file, returns an empty list if it can not be read or its snapshot was seen before
+    private static List<Weather> parseArchiveFile(Path file, Set<Long> seenTimestamps, Set<String> stations) {
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader reader = XmlInput.FACTORY.createXMLStreamReader(in);
+            try {
+                Long timestamp = readTimestamp(reader);
+                return seenTimestamps.add(timestamp) ? readStations(reader, timestamp, stations) : List.of();
+            } finally {
+                reader.close();
             }
-        } catch (Exception e){
-            e.printStackTrace();
+        } catch (Exception e) {
+            log.warn("Skipped unreadable archive file {}: {}", file, e.getMessage());
+            return List.of();
         }
     }
 
     /**
-     * Parses an XML document from the provided InputStream and returns its root element.
+     * Parses observations XML from the provided InputStream into Weather objects.
      *
+     * <p>
+     *     The XML is streamed, stations that are not in the given set are skipped while reading without
+     *     extracting their content. Stations missing a required value are skipped as well.
+     * </p>
      * <p>This method is Public to facilitate testing of XML parsing logic</p>
      *
-     * @param inputStream InputStream that contains XML
-     * @return XML root element
+     * @param inputStream InputStream that contains observations XML
+     * @param stations names of the stations to keep
+     * @return Weather objects of the kept stations, timestamped with the "timestamp" attribute of the root
+     * @throws XMLStreamException if the XML is malformed
      */
-    public Element parseXML(InputStream inputStream){
+    public List<Weather> parseObservations(InputStream inputStream, Set<String> stations) throws XMLStreamException {
+        XMLStreamReader reader = XmlInput.FACTORY.createXMLStreamReader(inputStream);
         try {
-            // Create a DocumentBuilder
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
+            return readStations(reader, readTimestamp(reader), stations);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Whether every station we care about already has a record at or after the timestamp
+    private boolean isImported(Long timestamp) {
+        for (String station : stations) {
+            Weather latest = weatherService.fetchLatestWeatherByStation(station);
+            if (latest == null || latest.getTimestamp() < timestamp) return false;
+        }
+        return true;
+    }
 
-            // Parse the XML document directly from InputStream
-            Document document = builder.parse(inputStream);
+    // Seconds since the newest stored record of the station was observed, NaN if there is none
+    private static double staleness(WeatherService weatherService, String station) {
+        Weather latest = weatherService.fetchLatestWeatherByStation(station);
+        return latest == null ? Double.NaN : Instant.now().getEpochSecond() - latest.getTimestamp();
+    }
 
-            // Normalize document (to avoid issues with different XML formatting)
-            document.getDocumentElement().normalize();
+    private static Timer importTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("weather.import")
+                .description("Duration of a phase of the weather import")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
 
-            // Return the root element
-            return document.getDocumentElement();
-        } catch (Exception e) {
-            e.printStackTrace();
+    // Reads the root element and returns its "timestamp" attribute
+    private static Long readTimestamp(XMLStreamReader reader) throws XMLStreamException {
+        reader.nextTag();
+        return Long.valueOf(reader.getAttributeValue(null, "timestamp"));
+    }
+
+    // Reads all station elements of the root, keeping the wanted ones
+    private static List<Weather> readStations(XMLStreamReader reader, Long timestamp, Set<String> stations) throws XMLStreamException {
+        List<Weather> observations = new ArrayList<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            Weather weather = parseStation(reader, stations);
+            if (weather != null) {
+                weather.setTimestamp(timestamp);
+                observations.add(weather);
+            }
+        }
+        return observations;
+    }
+
+    // Reads one station element, returns null if the station is not wanted or misses a required value
+    private static Weather parseStation(XMLStreamReader reader, Set<String> stations) throws XMLStreamException {
+        Weather weather = new Weather();
+        String airTemperature = null;
+        String windSpeed = null;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "name" -> {
+                    weather.setName(reader.getElementText().trim());
+                    if (!stations.contains(weather.getName())) {
+                        skipRemaining(reader);
+                        return null;
+                    }
+                }
+                case "wmocode" -> weather.setWmo(reader.getElementText().trim());
+                case "airtemperature" -> airTemperature = reader.getElementText().trim();
+                case "windspeed" -> windSpeed = reader.getElementText().trim();
+                case "phenomenon" -> weather.setPhenomenon(reader.getElementText().trim());
+                default -> skipRemaining(reader);
+            }
+        }
+
+        if (weather.getName() == null || airTemperature == null || airTemperature.isEmpty() || windSpeed == null || windSpeed.isEmpty()) {
+            log.debug("Skipped station with missing values: {}", weather.getName());
+            return null;
         }
-        return null;
+        weather.setWmo(weather.getWmo() == null ? "" : weather.getWmo());
+        weather.setPhenomenon(weather.getPhenomenon() == null ? "" : weather.getPhenomenon());
+        // Classified once here, fee calculations only compare the stored class
+        weather.setPhenomenonClass(PhenomenonClass.classify(weather.getPhenomenon()));
+        weather.setTemp(Double.valueOf(airTemperature));
+        weather.setWind(Double.valueOf(windSpeed));
+        return weather;
     }
 
-    // Utility method to get text content of an element
-    private static String getElementText(Element element, String tagName) {
-        NodeList nodeList = element.getElementsByTagName(tagName);
-        if (nodeList.getLength() > 0) {
-            return nodeList.item(0).getTextContent().trim();
+    // Skips to the end of the current element, without reading the content
+    private static void skipRemaining(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    // Gets the feed client, building it on the first call
+    private HttpClient httpClient() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder()
+                            .connectTimeout(connectTimeout)
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .build();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    // Holds the XML reader factory, created when the first payload is parsed rather than when the service is
+    private static final class XmlInput {
+
+        // Thread-safe once configured, so shared by all imports
+        static final XMLInputFactory FACTORY = createXMLInputFactory();
+
+        // Creates an XML reader factory that does not resolve DTDs or external entities
+        private static XMLInputFactory createXMLInputFactory() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            return factory;
         }
-        return "";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Service that applies the retention policy of stored weather records in the background.
+ * <p>
+ *     Records are kept in full resolution for {@code weather.retention.full-resolution}. Older records are downsampled
+ *     to the first record of every station per {@code weather.retention.bucket}, which is still in effect for
+ *     timestamped quotes within its bucket. Records older than {@code weather.retention.max-age} are purged.
+ *     The newest record of a station is always kept, so the latest weather never disappears.
+ * </p>
+ * <p>
+ *     Records are deleted in batches of {@code weather.retention.batch-size}, one short transaction each, so fee
+ *     lookups are never held up by a long running delete. The policy is applied every
+ *     {@code weather.retention.interval}.
+ * </p>
+ */
+@Slf4j
+@Profile("!mapped") // The mapped profile stores weather outside of the database
+@Service
+public class WeatherRetentionService {
+
+    private final WeatherRepository weatherRepository;
+
+    private final Duration fullResolution;
+
+    private final Duration bucket;
+
+    private final Duration maxAge;
+
+    private final int batchSize;
+
+    // Deleted records, tagged by reason
+    private final Counter downsampledCounter;
+    private final Counter purgedCounter;
+
+    /**
+     * Constructs a WeatherRetentionService with the given WeatherRepository and retention policy.
+     * <p>
+     *     The policy is read from application.properties, keys in use: {@code weather.retention.full-resolution},
+     *     {@code weather.retention.bucket}, {@code weather.retention.max-age} and {@code weather.retention.batch-size}.
+     *     Registers the {@code weather.retention.deleted} counter, tagged by reason (downsampled, purged).
+     * </p>
+     *
+     * @param weatherRepository the WeatherRepository bean injected by Spring
+     * @param meterRegistry the MeterRegistry bean the retention metrics are registered in
+     * @param fullResolution how long all records are kept
+     * @param bucket length of the period a single record per station is kept for, beyond the full resolution
+     * @param maxAge how long records are kept at all
+     * @param batchSize maximum amount of records deleted per transaction
+     * @throws IllegalArgumentException if the full resolution is longer than the maximum age, or a value is not positive
+     */
+    public WeatherRetentionService(WeatherRepository weatherRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${weather.retention.full-resolution}") Duration fullResolution,
+                                   @Value("${weather.retention.bucket}") Duration bucket,
+                                   @Value("${weather.retention.max-age}") Duration maxAge,
+                                   @Value("${weather.retention.batch-size}") int batchSize) {
+        if (fullResolution.isNegative() || bucket.toSeconds() <= 0 || batchSize <= 0 || fullResolution.compareTo(maxAge) > 0) {
+            throw new IllegalArgumentException("Invalid weather retention policy: full resolution " + fullResolution
+                    + ", bucket " + bucket + ", max age " + maxAge + ", batch size " + batchSize);
+        }
+        this.weatherRepository = weatherRepository;
+        this.fullResolution = fullResolution;
+        this.bucket = bucket;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.downsampledCounter = deletedCounter(meterRegistry, "downsampled");
+        this.purgedCounter = deletedCounter(meterRegistry, "purged");
+    }
+
+    /**
+     * Scheduled method that applies the retention policy, the interval is defined in application.properties.
+     * Key in use: {@code weather.retention.interval}
+     */
+    @Scheduled(fixedDelayString = "${weather.retention.interval}", initialDelayString = "${weather.retention.interval}")
+    public void scheduledTrigger() {
+        try {
+            applyRetention(Instant.now().getEpochSecond());
+        } catch (Exception e) {
+            log.error("Weather retention failed", e);
+        }
+    }
+
+    /**
+     * Purges records beyond the maximum age and downsamples records beyond the full resolution
+     *
+     * @param now current time, in epoch seconds
+     * @return Returns amount of deleted records
+     */
+    public int applyRetention(long now) {
+        // Purged first, so nothing is downsampled that is about to be deleted anyway
+        int purged = deleteInBatches(limit -> weatherRepository.findExpiredIds(now - maxAge.toSeconds(), limit), purgedCounter);
+        int downsampled = deleteInBatches(limit -> weatherRepository.findDownsampledIds(
+                now - fullResolution.toSeconds(), bucket.toSeconds(), limit), downsampledCounter);
+        log.info("Weather retention applied, purged: {}, downsampled: {}", purged, downsampled);
+        return purged + downsampled;
+    }
+
+    // Deletes the found records batch by batch until none are found, returns amount of deleted records
+    private int deleteInBatches(Function<Limit, List<Long>> finder, Counter counter) {
+        int deleted = 0;
+        List<Long> ids;
+        while (!(ids = finder.apply(Limit.of(batchSize))).isEmpty()) {
+            int batch = weatherRepository.deleteByIds(ids);
+            if (batch == 0) break; // Deleted meanwhile by someone else, found again by the next run
+            counter.increment(batch);
+            deleted += batch;
+        }
+        return deleted;
+    }
+
+    private static Counter deletedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("weather.retention.deleted")
+                .description("Weather records deleted by the retention policy")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
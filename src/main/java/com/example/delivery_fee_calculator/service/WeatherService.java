@@ -14,6 +14,15 @@ public interface WeatherService {
      */
     void saveWeather(Weather weather);
 
+    /**
+     * Save operation for many weather information objects at once, in a single transaction.
+     * Objects with a station and timestamp that is already stored are skipped.
+     *
+     * @param weatherList weather information objects for saving
+     * @return returns the weather information objects that were stored
+     */
+    List<Weather> saveAllWeather(List<Weather> weatherList);
+
     /**
      * Read all operation, filtered by station
      *
@@ -22,6 +31,14 @@ public interface WeatherService {
      */
     List<Weather> fetchWeatherByStation(String station);
 
+    /**
+     * Read operation, latest weather information of a station
+     *
+     * @param station takes station name as input
+     * @return returns the newest weather information of the station, null if there is none
+     */
+    Weather fetchLatestWeatherByStation(String station);
+
     /**
      * Read operation, filtered by station and timestamp
      *
@@ -30,4 +47,24 @@ public interface WeatherService {
      * @return returns weather information by station name and timestamp
      */
     Weather fetchWeatherByStationAndTimestamp(String station, Long timestamp);
+
+    /**
+     * Read operation, weather information of a station in effect at given point in time
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return returns the newest weather information observed at or before the timestamp, null if there is none
+     */
+    Weather fetchWeatherByStationAtTime(String station, Long timestamp);
+
+    /**
+     * Read operation, weather information of a station in effect during a period
+     *
+     * @param station takes station name as input
+     * @param from start of the period
+     * @param until end of the period, inclusive
+     * @return returns the weather information in effect at the start of the period, if there is any, followed by
+     *         the weather information observed after it until the end of the period, oldest first
+     */
+    List<Weather> fetchWeatherByStationDuring(String station, Long from, Long until);
 }
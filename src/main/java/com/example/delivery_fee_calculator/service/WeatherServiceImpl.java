@@ -2,9 +2,14 @@ package com.example.delivery_fee_calculator.service;
 
 import com.example.delivery_fee_calculator.entity.Weather;
 import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service implementation that provides operations for weather data.
@@ -12,6 +17,10 @@ import java.util.List;
  *     This service currently supports saving a new weather record and retrieving weather records
  *     for a specific station, ordered by timestamp in descending order.
  * </p>
+ * <p>
+ *     Lookups run in read-only transactions, so Hibernate neither keeps snapshots of the loaded records for dirty
+ *     checking nor flushes the session, and H2 is told the connection only reads.
+ * </p>
  *
  */
 @Service
@@ -41,6 +50,37 @@ public class WeatherServiceImpl implements WeatherService {
         weatherRepository.save(weather);
     }
 
+    /**
+     * Saves many weather information objects into database in a single transaction.
+     * <p>
+     *     Objects with a station and timestamp that is already stored, or repeated within the list, are skipped.
+     *     Rows are written with JDBC batch inserts, see {@code hibernate.jdbc.batch_size} in application.properties
+     * </p>
+     *
+     * @param weatherList weather information objects for saving
+     * @return Returns the weather information objects that were stored
+     */
+    @Override
+    @Transactional
+    public List<Weather> saveAllWeather(List<Weather> weatherList) {
+        // Group by station, dropping repeated timestamps of a station
+        Map<String, Map<Long, Weather>> byStation = new LinkedHashMap<>();
+        for (Weather weather : weatherList) {
+            byStation.computeIfAbsent(weather.getName(), name -> new LinkedHashMap<>()).putIfAbsent(weather.getTimestamp(), weather);
+        }
+
+        // Skip what is already stored, one query per station
+        List<Weather> newWeatherList = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, Weather>> station : byStation.entrySet()) {
+            Map<Long, Weather> byTimestamp = station.getValue();
+            byTimestamp.keySet().removeAll(weatherRepository.findStoredTimestamps(station.getKey(), byTimestamp.keySet()));
+            newWeatherList.addAll(byTimestamp.values());
+        }
+
+        weatherRepository.saveAll(newWeatherList);
+        return newWeatherList;
+    }
+
     /**
      * Gets all weather information of specific station, ordered by timestamp descending order
      *
@@ -48,10 +88,23 @@ public class WeatherServiceImpl implements WeatherService {
      * @return Returns list of Weather entities
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Weather> fetchWeatherByStation(String station) {
         return weatherRepository.findByNameOrderByTimestampDesc(station);
     }
 
+    /**
+     * Gets the newest weather information of specific station
+     *
+     * @param station Takes station name as input
+     * @return Returns the latest Weather entity, null if the station has no records
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Weather fetchLatestWeatherByStation(String station) {
+        return firstOrNull(weatherRepository.findLatestByName(station, Limit.of(1)));
+    }
+
     /**
      * Gets weather information of specific station and timestamp
      *
@@ -60,7 +113,45 @@ public class WeatherServiceImpl implements WeatherService {
      * @return Returns a Weather entity
      */
     @Override
+    @Transactional(readOnly = true)
     public Weather fetchWeatherByStationAndTimestamp(String station, Long timestamp) {
         return weatherRepository.findByNameAndTimestamp(station, timestamp);
     }
+
+    /**
+     * Gets the newest weather information of specific station observed at or before given timestamp
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return Returns a Weather entity, null if there is none
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Weather fetchWeatherByStationAtTime(String station, Long timestamp) {
+        return firstOrNull(weatherRepository.findLatestByNameAtOrBefore(station, timestamp, Limit.of(1)));
+    }
+
+    /**
+     * Gets the weather information of specific station in effect during a period, the record in effect at its start
+     * is found the same way as by {@link #fetchWeatherByStationAtTime(String, Long)}
+     *
+     * @param station takes station name as input
+     * @param from start of the period
+     * @param until end of the period, inclusive
+     * @return Returns list of Weather entities, oldest first
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Weather> fetchWeatherByStationDuring(String station, Long from, Long until) {
+        List<Weather> weatherList = new ArrayList<>();
+        Weather inEffect = fetchWeatherByStationAtTime(station, from);
+        if (inEffect != null) weatherList.add(inEffect);
+        weatherList.addAll(weatherRepository.findByNameBetween(station, from, until));
+        return weatherList;
+    }
+
+    // Returns the first weather of the list, null if the list is empty
+    private static Weather firstOrNull(List<Weather> weatherList) {
+        return weatherList.isEmpty() ? null : weatherList.get(0);
+    }
 }
@@ -0,0 +1,13 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+
+import java.util.Map;
+
+/**
+ * Application event published whenever the newest weather record of a station changes.
+ *
+ * @param latestByStation immutable snapshot of the newest weather record of every station, by station name
+ */
+public record WeatherSnapshotChangedEvent(Map<String, Weather> latestByStation) {
+}
@@ -0,0 +1,76 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.entity.BaseFeeRule;
+import com.example.delivery_fee_calculator.entity.ExtraFeeRule;
+import com.example.delivery_fee_calculator.entity.ExtraFeeRule.Condition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Business rules the delivery fees are calculated with until other rules are stored in the database.
+ * <p>
+ *     The database is seeded with these rules when it holds none.
+ * </p>
+ */
+public final class DefaultFeeRules {
+
+    private static final List<String> CITIES = List.of("tallinn", "tartu", "pärnu");
+    private static final List<String> VEHICLES = List.of("car", "scooter", "bike");
+
+    // Regional base fee (RBF), rows: tallinn, tartu, pärnu; columns: car, scooter, bike
+    private static final double[][] BASE_FEES = {
+            {4.0, 3.5, 3.0},
+            {3.5, 3.0, 2.5},
+            {3.0, 2.5, 2.0}};
+
+    private DefaultFeeRules() {
+    }
+
+    /**
+     * @return Returns new, not yet stored, base fee rules of every city and vehicle
+     */
+    public static List<BaseFeeRule> baseFeeRules() {
+        List<BaseFeeRule> rules = new ArrayList<>();
+        for (int city = 0; city < CITIES.size(); city++) {
+            for (int vehicle = 0; vehicle < VEHICLES.size(); vehicle++) {
+                rules.add(BaseFeeRule.builder().city(CITIES.get(city)).vehicle(VEHICLES.get(vehicle)).fee(BASE_FEES[city][vehicle]).build());
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @return Returns new, not yet stored, extra fee rules, cars never pay extra
+     */
+    public static List<ExtraFeeRule> extraFeeRules() {
+        List<ExtraFeeRule> rules = new ArrayList<>();
+        for (String vehicle : List.of("scooter", "bike")) {
+            // Air temperature extra fee (ATEF): below -10, from -10 to 0
+            rules.add(band(vehicle, Condition.AIR_TEMPERATURE, null, false, -10.0, false, 1.0, false));
+            rules.add(band(vehicle, Condition.AIR_TEMPERATURE, -10.0, true, 0.0, true, 0.5, false));
+
+            // Weather phenomenon extra fee (WPEF)
+            rules.add(phenomenon(vehicle, PhenomenonClass.RAIN, 0.5, false));
+            rules.add(phenomenon(vehicle, PhenomenonClass.SNOW_SLEET, 1.0, false));
+            rules.add(phenomenon(vehicle, PhenomenonClass.FORBIDDEN, 0.0, true));
+        }
+
+        // Wind speed extra fee (WSEF), bikes only: from 10 to 20, above 20 forbidden
+        rules.add(band("bike", Condition.WIND_SPEED, 10.0, true, 20.0, true, 0.5, false));
+        rules.add(band("bike", Condition.WIND_SPEED, 20.0, false, null, false, 0.0, true));
+        return rules;
+    }
+
+    private static ExtraFeeRule band(String vehicle, Condition condition, Double minValue, boolean minInclusive,
+                                     Double maxValue, boolean maxInclusive, double fee, boolean forbidden) {
+        return ExtraFeeRule.builder().vehicle(vehicle).condition(condition)
+                .minValue(minValue).minInclusive(minInclusive).maxValue(maxValue).maxInclusive(maxInclusive)
+                .fee(fee).forbidden(forbidden).build();
+    }
+
+    private static ExtraFeeRule phenomenon(String vehicle, PhenomenonClass phenomenon, double fee, boolean forbidden) {
+        return ExtraFeeRule.builder().vehicle(vehicle).condition(Condition.PHENOMENON).phenomenon(phenomenon)
+                .fee(fee).forbidden(forbidden).build();
+    }
+}
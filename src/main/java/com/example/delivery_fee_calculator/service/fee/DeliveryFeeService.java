@@ -4,10 +4,22 @@ import org.springframework.stereotype.Service;
 
 /**
  * Service for calculating the total delivery fee based on business rules.
+ * <p>
+ *     The business rules are compiled into a {@link FeeTable}, starting with the {@link DefaultFeeRules}.
+ *     {@link FeeRuleService} swaps in the table compiled from the rules stored in the database, whenever they change.
+ *     Callers on the request path take the current table once per request, intern the city and vehicle into codes
+ *     of that table and look the fee up without allocating. {@link #deliveryFeeCalculator} remains as a facade
+ *     taking the raw inputs.
+ * </p>
  */
 @Service
 public class DeliveryFeeService {
 
+    private static final double FORBIDDEN = FeeTable.FORBIDDEN;
+
+    // Replaced as a whole, readers never lock
+    private volatile FeeTable feeTable = FeeTable.compile(DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules());
+
     /**
      * Calculates the total delivery fee based on city, vehicle, and weather conditions.
      *
@@ -22,89 +34,30 @@ public class DeliveryFeeService {
         // Ensure no null values are given
         if (city == null || vehicle == null || air_temprature == null || wind_speed == null || weather_phenomenon == null) return null;
 
-        // Cleaning and formating of input  data
-        city = city.toLowerCase().trim();
-        vehicle = vehicle.toLowerCase().trim();
-        weather_phenomenon = weather_phenomenon.toLowerCase().trim();
-
-        // Fee calculation
-        Double base_fee = baseFeeCalculator(city, vehicle);
-        Double extra_fee = extraFeeCalculator(vehicle,air_temprature,wind_speed,weather_phenomenon);
+        // Fee lookup in one table, as it may be swapped meanwhile, the table ignores case and surrounding whitespace
+        FeeTable table = feeTable;
+        double fee = table.fee(table.cityCode(city), table.vehicleCode(vehicle),
+                air_temprature, wind_speed, PhenomenonClass.classify(weather_phenomenon));
 
         // Ensure vehicle usage is not forbidden
-        return (base_fee != null && extra_fee != null) ? base_fee + extra_fee : null;
+        return (fee != FORBIDDEN) ? fee : null;
     }
 
     /**
-     * Determines the base delivery fee based on city and vehicle type.
-     * Returns null if the vehicle type is not from the options (car, scooter, bike)
+     * Gets the current fee table. Codes of a table are only valid for lookups in the same table.
+     *
+     * @return Returns the current fee table
      */
-    private static Double baseFeeCalculator(String city, String vehicle){
-        // Utilizes an enhanced switch expression for cleaner and more concise logic
-        return switch (city) {
-            case "tallinn" -> switch (vehicle) {
-                case "car" -> 4.0;
-                case "scooter" -> 3.5;
-                case "bike" -> 3.0;
-                default -> null;
-            };
-            case "tartu" -> switch (vehicle) {
-                case "car" -> 3.5;
-                case "scooter" -> 3.0;
-                case "bike" -> 2.5;
-                default -> null;
-            };
-            case "pärnu" -> switch (vehicle) {
-                case "car" -> 3.0;
-                case "scooter" -> 2.5;
-                case "bike" -> 2.0;
-                default -> null;
-            };
-            default -> null;
-        };
+    public FeeTable feeTable() {
+        return feeTable;
     }
 
     /**
-     * Determines the extra delivery fee based on weather conditions.
-     * Returns null if the vehicle is forbidden due to severe weather.
+     * Swaps in a new fee table, requests already holding the previous one finish with it
+     *
+     * @param feeTable the new fee table
      */
-    private static Double extraFeeCalculator(String vehicle, Double air_temprature, Double wind_speed, String weather_phenomenon){
-        double feeATEF = 0.0; // Air Temperature Extra Fee
-        double feeWSEF = 0.0; // Wind Speed Extra Fee
-        double feeWPEF = 0.0; // Weather Phenomenon Extra Fee
-
-        // Extra fee for air temperature (ATEF)
-        if (vehicle.equals("scooter") || vehicle.equals("bike")) {
-            if (air_temprature < -10.0) {
-                feeATEF = 1.0;
-            } else if (air_temprature >= -10.0 && air_temprature <= 0.0) {
-                feeATEF = 0.5;
-            }
-        }
-
-        // Extra fee for wind speed (WSEF)
-        if (vehicle.equals("bike")) {
-            if (wind_speed > 20) {
-                return null; // Usage forbidden
-            } else if (wind_speed >= 10) {
-                feeWSEF = 0.5;
-            }
-        }
-
-        // Extra fee for weather phenomenon (WPEF)
-        if (vehicle.equals("bike") || vehicle.equals("scooter")) {
-            if (weather_phenomenon.contains("snow") || weather_phenomenon.contains("sleet")) {
-                feeWPEF = 1.0;
-            } else if (weather_phenomenon.contains("rain")) {
-                feeWPEF = 0.5;
-            }
-            // If the phenomenon is in the forbidden list, return null immediately
-            else if (weather_phenomenon.contains("glaze") || weather_phenomenon.contains("hail") || weather_phenomenon.contains("thunder")) {
-                return null; // Usage forbidden
-            }
-        }
-
-        // If the vehicle is forbidden due to weather, return null
-        return feeATEF + feeWSEF + feeWPEF;
+    public void setFeeTable(FeeTable feeTable) {
+        this.feeTable = feeTable;
     }
 }
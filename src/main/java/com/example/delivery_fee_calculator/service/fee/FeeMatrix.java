@@ -0,0 +1,173 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.TokenTable;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Immutable snapshot of the quote of every city and vehicle pair based on the latest weather.
+ * <p>
+ *     Quotes based on the latest weather only change with a new weather snapshot or new business rules, so they are
+ *     all computed at once, whenever one of them is published, and looked up by a pair of indexes afterward: the
+ *     index of the city among the known cities and the code of the vehicle type in the {@link FeeTable} the matrix
+ *     was computed with. Vehicle types outside of the table have a column of their own, so every quote that can be
+ *     asked for is in the matrix and a lookup is a single array access, without touching the weather or the rules.
+ * </p>
+ */
+public final class FeeMatrix {
+
+    /** Index of a city that is not known */
+    public static final int UNKNOWN = TokenTable.UNKNOWN;
+
+    private static final FeeQuote WEATHER_NOT_AVAILABLE = FeeQuote.ofError(FeeQuote.WEATHER_NOT_AVAILABLE);
+    private static final FeeQuote VEHICLE_FORBIDDEN = FeeQuote.ofError(FeeQuote.VEHICLE_FORBIDDEN);
+
+    private final FeeTable feeTable;
+
+    // Lower case names of the known cities, sorted, the position of a city is its index
+    private final List<String> cityNames;
+    private final TokenTable cities;
+
+    // Timestamp of the latest weather of every city, null if its station has none
+    private final Long[] weatherTimestamps;
+
+    // Quote and whether the vehicle is forbidden, indexed by slot
+    private final FeeQuote[] quotes;
+    private final boolean[] forbidden;
+
+    private FeeMatrix(FeeTable feeTable, List<String> cityNames, Long[] weatherTimestamps, FeeQuote[] quotes, boolean[] forbidden) {
+        this.feeTable = feeTable;
+        this.cityNames = cityNames;
+        this.cities = TokenTable.of(cityNames);
+        this.weatherTimestamps = weatherTimestamps;
+        this.quotes = quotes;
+        this.forbidden = forbidden;
+    }
+
+    /**
+     * Computes the quote of every known city and vehicle pair
+     *
+     * @param feeTable fee table the fees are looked up in
+     * @param cityRegistry registry of the known cities and their stations
+     * @param latestWeather latest weather of a station, null if it has none
+     * @return Returns the computed matrix
+     */
+    public static FeeMatrix compute(FeeTable feeTable, CityRegistry cityRegistry, Function<String, Weather> latestWeather) {
+        List<String> cities = List.copyOf(new TreeSet<>(cityRegistry.cities()));
+        int columns = feeTable.vehicles().size() + 1;
+        Long[] weatherTimestamps = new Long[cities.size()];
+        FeeQuote[] quotes = new FeeQuote[cities.size() * columns];
+        boolean[] forbidden = new boolean[quotes.length];
+
+        for (int city = 0; city < cities.size(); city++) {
+            Weather weather = latestWeather.apply(cityRegistry.station(cities.get(city)));
+            weatherTimestamps[city] = weather == null ? null : weather.getTimestamp();
+            int cityCode = feeTable.cityCode(cities.get(city));
+            for (int vehicle = FeeTable.UNKNOWN; vehicle < columns - 1; vehicle++) {
+                int slot = city * columns + vehicle + 1;
+                if (weather == null) {
+                    quotes[slot] = WEATHER_NOT_AVAILABLE;
+                    continue;
+                }
+                double fee = feeTable.fee(cityCode, vehicle,
+                        weather.getTemp(), weather.getWind(), weather.getPhenomenonClass());
+                forbidden[slot] = fee == FeeTable.FORBIDDEN;
+                quotes[slot] = forbidden[slot] ? VEHICLE_FORBIDDEN : FeeQuote.ofFee(fee);
+            }
+        }
+        return new FeeMatrix(feeTable, cities, weatherTimestamps, quotes, forbidden);
+    }
+
+    /**
+     * Gets the fee table the matrix was computed with, its vehicle codes are the vehicle indexes of the matrix
+     *
+     * @return Returns the fee table
+     */
+    public FeeTable feeTable() {
+        return feeTable;
+    }
+
+    /**
+     * Gets the index of a city
+     *
+     * @param city city name, matched ignoring case and surrounding whitespace
+     * @return Returns the city index, UNKNOWN if the city is not known
+     */
+    public int cityIndex(String city) {
+        return cities.indexOf(city);
+    }
+
+    /**
+     * Gets the index of a vehicle type
+     *
+     * @param vehicle vehicle type, matched ignoring case and surrounding whitespace
+     * @return Returns the vehicle code in the fee table, FeeTable.UNKNOWN if it is not in the table
+     */
+    public int vehicleIndex(String vehicle) {
+        return feeTable.vehicleCode(vehicle);
+    }
+
+    /**
+     * Gets the amount of slots, one per known city and vehicle index, unknown vehicle types included
+     *
+     * @return Returns the amount of slots
+     */
+    public int slots() {
+        return quotes.length;
+    }
+
+    /**
+     * Gets the slot of a city and vehicle index
+     *
+     * @param city index of a known city
+     * @param vehicle vehicle index, may be FeeTable.UNKNOWN
+     * @return Returns the slot, between 0 and {@link #slots()}
+     */
+    public int slot(int city, int vehicle) {
+        return city * (feeTable.vehicles().size() + 1) + vehicle + 1;
+    }
+
+    /**
+     * Gets the quote of a slot
+     *
+     * @param slot slot of a city and vehicle index
+     * @return Returns the fee or the error the pair is quoted with
+     */
+    public FeeQuote quote(int slot) {
+        return quotes[slot];
+    }
+
+    /**
+     * Gets whether usage of the vehicle is forbidden in the city by the latest weather
+     *
+     * @param slot slot of a city and vehicle index
+     * @return Returns true if the vehicle is forbidden, false if it is allowed or there is no weather to decide by
+     */
+    public boolean forbidden(int slot) {
+        return forbidden[slot];
+    }
+
+    /**
+     * Gets the timestamp of the latest weather of a city
+     *
+     * @param city index of a known city
+     * @return Returns the timestamp, null if there is no weather of the city
+     */
+    public Long weatherTimestamp(int city) {
+        return weatherTimestamps[city];
+    }
+
+    /**
+     * Gets the known cities
+     *
+     * @return Returns the lower case city names, sorted, the position of a city is its index
+     */
+    public List<String> cities() {
+        return cityNames;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.dto.FeeUpdate;
+
+import java.util.List;
+
+/**
+ * Application event published whenever the fee of a city and vehicle pair based on the latest weather changes.
+ *
+ * @param version version of the fee matrix after the changes
+ * @param changes new fee or error of every changed pair
+ */
+public record FeeMatrixChangedEvent(long version, List<FeeUpdate> changes) {
+}
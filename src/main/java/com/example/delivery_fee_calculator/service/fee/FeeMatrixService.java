@@ -0,0 +1,185 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.dto.FeeChanges;
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.dto.FeeUpdate;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import com.example.delivery_fee_calculator.service.WeatherSnapshotChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service that keeps the fee matrix, the fee of every known city and vehicle pair based on the latest weather,
+ * and the changes of it.
+ * <p>
+ *     The matrix is computed once per weather snapshot, that is right after every import has persisted its
+ *     observations, and once per change of the business rules. It is published as an immutable {@link FeeMatrix},
+ *     which quotes based on the latest weather are served from without touching the weather or the rules.
+ *     It is diffed against the previous matrix, and if any pair changed the matrix gets a new version and the
+ *     changed pairs are published as a {@link FeeMatrixChangedEvent}. The changes of the last
+ *     {@code delivery.fee.changes.history} versions are kept, so clients can fetch only what changed since the version
+ *     they know, instead of quoting every pair again.
+ * </p>
+ * <p>
+ *     Versions start from the startup time in milliseconds, so a version of an earlier run is not mistaken for a
+ *     recent one, it is too old and gets the whole matrix.
+ * </p>
+ */
+@Slf4j
+@Service
+public class FeeMatrixService {
+
+    private final DeliveryFeeService deliveryFeeService;
+
+    private final WeatherService weatherService;
+
+    private final CityRegistry cityRegistry;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int historySize;
+
+    // Current matrix, replaced as a whole while holding this, readers never lock. Null until first computed
+    private volatile FeeMatrix matrix;
+
+    // Guarded by this: version of the matrix, and the changes that led to it, oldest first
+    private long version = System.currentTimeMillis();
+    private final Deque<FeeMatrixChangedEvent> history = new ArrayDeque<>();
+
+    /**
+     * Constructs a FeeMatrixService with the given services.
+     *
+     * @param deliveryFeeService the DeliveryFeeService bean the fees are calculated with
+     * @param weatherService the WeatherService bean providing the latest weather
+     * @param cityRegistry the CityRegistry bean providing the cities and their stations
+     * @param eventPublisher publisher of the matrix changes
+     * @param historySize amount of versions whose changes are kept, key in use: {@code delivery.fee.changes.history}
+     */
+    public FeeMatrixService(DeliveryFeeService deliveryFeeService, WeatherService weatherService,
+                            CityRegistry cityRegistry, ApplicationEventPublisher eventPublisher,
+                            @Value("${delivery.fee.changes.history}") int historySize) {
+        this.deliveryFeeService = deliveryFeeService;
+        this.weatherService = weatherService;
+        this.cityRegistry = cityRegistry;
+        this.eventPublisher = eventPublisher;
+        this.historySize = historySize;
+    }
+
+    /**
+     * Computes the fee matrix and publishes its changes, on startup and whenever the latest weather or the business
+     * rules have changed
+     *
+     * @return Returns the published changes, null if nothing changed
+     */
+    @EventListener({ContextRefreshedEvent.class, WeatherSnapshotChangedEvent.class, FeeRulesChangedEvent.class})
+    public synchronized FeeMatrixChangedEvent recompute() {
+        FeeMatrix previous = matrix;
+        FeeMatrix next = FeeMatrix.compute(deliveryFeeService.feeTable(), cityRegistry, weatherService::fetchLatestWeatherByStation);
+        // Published even if no fee changed, as the quotes are now based on newer weather
+        matrix = next;
+
+        List<FeeUpdate> changes = new ArrayList<>();
+        forEachPair(next, (city, vehicle, quote) -> {
+            if (!quote.equals(quoteOf(previous, city, vehicle))) changes.add(FeeUpdate.of(city, vehicle, quote));
+        });
+        // A vehicle type removed from the business rules is forbidden from now on
+        forEachPair(previous, (city, vehicle, quote) -> {
+            if (quoteOf(next, city, vehicle) == null) {
+                changes.add(FeeUpdate.of(city, vehicle, FeeQuote.ofError(FeeQuote.VEHICLE_FORBIDDEN)));
+            }
+        });
+        if (changes.isEmpty()) return null;
+
+        FeeMatrixChangedEvent event = new FeeMatrixChangedEvent(++version, List.copyOf(changes));
+        history.addLast(event);
+        if (history.size() > historySize) history.removeFirst();
+        log.info("Fee matrix changed, version: {}, changed pairs: {}", version, changes.size());
+
+        eventPublisher.publishEvent(event);
+        return event;
+    }
+
+    /**
+     * Gets the current fee matrix
+     *
+     * @return Returns the matrix of the latest weather and the current business rules
+     */
+    public FeeMatrix matrix() {
+        FeeMatrix matrix = this.matrix;
+        if (matrix != null) return matrix;
+        // Asked for before the application context was refreshed
+        synchronized (this) {
+            if (this.matrix == null) recompute();
+            return this.matrix;
+        }
+    }
+
+    /**
+     * Gets the fees changed since a version of the matrix
+     *
+     * @param since version the client knows, null for the whole matrix
+     * @return Returns the newest fee of every pair changed after the version, or the whole matrix if the version
+     *         is not known or older than the kept changes
+     */
+    public synchronized FeeChanges changesSince(Long since) {
+        long oldestKnown = version - history.size();
+        if (since == null || since < oldestKnown || since > version) {
+            List<FeeUpdate> all = new ArrayList<>();
+            forEachPair(matrix(), (city, vehicle, quote) -> all.add(FeeUpdate.of(city, vehicle, quote)));
+            return new FeeChanges(version, true, all);
+        }
+
+        // Later changes of a pair replace earlier ones
+        Map<Pair, FeeUpdate> changes = new LinkedHashMap<>();
+        for (Iterator<FeeMatrixChangedEvent> events = history.descendingIterator(); events.hasNext(); ) {
+            FeeMatrixChangedEvent event = events.next();
+            if (event.version() <= since) break;
+            for (FeeUpdate change : event.changes()) {
+                changes.putIfAbsent(new Pair(change.city(), change.vehicle()), change);
+            }
+        }
+        return new FeeChanges(version, false, List.copyOf(changes.values()));
+    }
+
+    // Passes the quote of every known city and vehicle pair of the matrix, by city and vehicle type
+    private static void forEachPair(FeeMatrix matrix, PairConsumer consumer) {
+        if (matrix == null) return;
+        List<String> vehicles = matrix.feeTable().vehicles();
+        for (int city = 0; city < matrix.cities().size(); city++) {
+            for (int vehicle = 0; vehicle < vehicles.size(); vehicle++) {
+                consumer.accept(matrix.cities().get(city), vehicles.get(vehicle), matrix.quote(matrix.slot(city, vehicle)));
+            }
+        }
+    }
+
+    // Quote of a city and vehicle pair, null if the matrix does not have the pair
+    private static FeeQuote quoteOf(FeeMatrix matrix, String city, String vehicle) {
+        if (matrix == null) return null;
+        int cityIndex = matrix.cityIndex(city);
+        int vehicleIndex = matrix.vehicleIndex(vehicle);
+        return cityIndex == FeeMatrix.UNKNOWN || vehicleIndex == FeeTable.UNKNOWN
+                ? null : matrix.quote(matrix.slot(cityIndex, vehicleIndex));
+    }
+
+    @FunctionalInterface
+    private interface PairConsumer {
+        void accept(String city, String vehicle, FeeQuote quote);
+    }
+
+    // City and vehicle type, lowercase
+    private record Pair(String city, String vehicle) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.entity.BaseFeeRule;
+import com.example.delivery_fee_calculator.entity.ExtraFeeRule;
+import com.example.delivery_fee_calculator.repository.BaseFeeRuleRepository;
+import com.example.delivery_fee_calculator.repository.ExtraFeeRuleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service that keeps the fee table of {@link DeliveryFeeService} in line with the business rules stored in the database.
+ * <p>
+ *     The rules are reloaded periodically, a table compiled from changed rules is swapped in atomically and announced
+ *     with a {@link FeeRulesChangedEvent}. Invalid rules are rejected and the current table is kept. The reload
+ *     interval is defined in application.properties. Key in use: {@code delivery.fee.rules.reload-interval}
+ * </p>
+ */
+@Slf4j
+@Service
+public class FeeRuleService {
+
+    private final BaseFeeRuleRepository baseFeeRuleRepository;
+
+    private final ExtraFeeRuleRepository extraFeeRuleRepository;
+
+    private final DeliveryFeeService deliveryFeeService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Constructs a FeeRuleService with the given repositories and DeliveryFeeService.
+     *
+     * @param baseFeeRuleRepository the BaseFeeRuleRepository bean injected by Spring
+     * @param extraFeeRuleRepository the ExtraFeeRuleRepository bean injected by Spring
+     * @param deliveryFeeService the DeliveryFeeService bean whose fee table is kept up to date
+     * @param eventPublisher publisher of the rule changes
+     */
+    public FeeRuleService(BaseFeeRuleRepository baseFeeRuleRepository, ExtraFeeRuleRepository extraFeeRuleRepository,
+                          DeliveryFeeService deliveryFeeService, ApplicationEventPublisher eventPublisher) {
+        this.baseFeeRuleRepository = baseFeeRuleRepository;
+        this.extraFeeRuleRepository = extraFeeRuleRepository;
+        this.deliveryFeeService = deliveryFeeService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Seeds the database with the {@link DefaultFeeRules} if it holds no rules, then loads the rules
+     */
+    @PostConstruct
+    public void init() {
+        if (baseFeeRuleRepository.count() == 0 && extraFeeRuleRepository.count() == 0) {
+            baseFeeRuleRepository.saveAll(DefaultFeeRules.baseFeeRules());
+            extraFeeRuleRepository.saveAll(DefaultFeeRules.extraFeeRules());
+            log.info("Seeded database with default fee rules");
+        }
+        reload();
+    }
+
+    /**
+     * Loads the rules from the database and swaps in their fee table if it differs from the current one
+     *
+     * @return Returns true if a new fee table was swapped in
+     */
+    @Scheduled(fixedDelayString = "${delivery.fee.rules.reload-interval}", initialDelayString = "${delivery.fee.rules.reload-interval}")
+    public boolean reload() {
+        List<BaseFeeRule> baseFeeRules = new ArrayList<>();
+        List<ExtraFeeRule> extraFeeRules = new ArrayList<>();
+        baseFeeRuleRepository.findAll().forEach(baseFeeRules::add);
+        extraFeeRuleRepository.findAll().forEach(extraFeeRules::add);
+
+        FeeTable feeTable;
+        try {
+            feeTable = FeeTable.compile(baseFeeRules, extraFeeRules);
+        } catch (IllegalArgumentException e) {
+            log.error("Fee rules rejected, keeping the current ones: {}", e.getMessage());
+            return false;
+        }
+
+        if (feeTable.equals(deliveryFeeService.feeTable())) return false;
+        deliveryFeeService.setFeeTable(feeTable);
+        eventPublisher.publishEvent(new FeeRulesChangedEvent(feeTable));
+        log.info("Fee rules changed, {} base fees and {} extra fee bands loaded", baseFeeRules.size(), extraFeeRules.size());
+        return true;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+/**
+ * Application event published whenever a fee table compiled from changed business rules is swapped in.
+ *
+ * @param feeTable the new fee table
+ */
+public record FeeRulesChangedEvent(FeeTable feeTable) {
+}
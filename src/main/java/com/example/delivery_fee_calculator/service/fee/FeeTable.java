@@ -0,0 +1,351 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.entity.BaseFeeRule;
+import com.example.delivery_fee_calculator.entity.ExtraFeeRule;
+import com.example.delivery_fee_calculator.service.TokenTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Immutable, precomputed delivery fee lookup table, compiled from base fee and extra fee rules.
+ * <p>
+ *     Cities and vehicles are interned into small integer codes of a {@link TokenTable} and weather phenomena are reduced to a
+ *     {@link PhenomenonClass}. The bounds of all air temperature and wind speed bands split the measured values into
+ *     atoms, every bound itself and every open interval between two bounds, which no band partially covers.
+ *     A value that is not a number has an atom of its own, which no band covers.
+ *     The total fee of every combination is computed once when the table is compiled, so a lookup is a scan over a
+ *     handful of bounds and a single array access, without any allocation.
+ * </p>
+ * <p>
+ *     Tables with the same fees have the same {@link #version()}, regardless of how the rules were written down.
+ * </p>
+ */
+public final class FeeTable {
+
+    /** Sentinel fee for a combination where usage of the vehicle is forbidden, never a fee as fees are not negative */
+    public static final double FORBIDDEN = -1.0;
+
+    /** Code of a city or vehicle that is not in the table */
+    public static final int UNKNOWN = TokenTable.UNKNOWN;
+
+    private static final int PHENOMENON_CLASSES = PhenomenonClass.values().length;
+
+    private final TokenTable cityCodes;
+    private final TokenTable vehicleCodes;
+
+    // Cities and vehicle types in the order of their codes
+    private final List<String> cities;
+    private final List<String> vehicles;
+
+    // Sorted distinct bounds of all air temperature and wind speed bands
+    private final double[] temperatureBounds;
+    private final double[] windBounds;
+
+    // Total fee, indexed by city, vehicle, temperature atom, wind atom and phenomenon class
+    private final double[] fees;
+
+    // Distance between the fees of neighbouring vehicles and temperature atoms
+    private final int vehicleStride;
+    private final int temperatureStride;
+
+    private final int version;
+
+    private FeeTable(List<String> cities, List<String> vehicles, double[] temperatureBounds, double[] windBounds, double[] fees) {
+        this.cityCodes = TokenTable.of(cities);
+        this.vehicleCodes = TokenTable.of(vehicles);
+        this.cities = List.copyOf(cities);
+        this.vehicles = List.copyOf(vehicles);
+        this.temperatureBounds = temperatureBounds;
+        this.windBounds = windBounds;
+        this.fees = fees;
+        this.temperatureStride = atoms(windBounds) * PHENOMENON_CLASSES;
+        this.vehicleStride = atoms(temperatureBounds) * temperatureStride;
+        this.version = Objects.hash(cities, vehicles,
+                Arrays.hashCode(temperatureBounds), Arrays.hashCode(windBounds), Arrays.hashCode(fees));
+    }
+
+    /**
+     * Compiles the table from base fee and extra fee rules, any FORBIDDEN component makes the total fee FORBIDDEN.
+     *
+     * @param baseFeeRules base fee per city and vehicle, only these combinations are served
+     * @param extraFeeRules extra fee bands per vehicle, rules of vehicles without a base fee are ignored
+     * @return compiled table
+     * @throws IllegalArgumentException if a rule is incomplete or has a negative fee, a city and vehicle has several
+     *     base fees or bands of a vehicle overlap
+     */
+    public static FeeTable compile(List<BaseFeeRule> baseFeeRules, List<ExtraFeeRule> extraFeeRules) {
+        baseFeeRules.forEach(FeeTable::validate);
+        extraFeeRules.forEach(FeeTable::validate);
+
+        // Sorted, so the codes do not depend on the order the rules were loaded in
+        List<String> cities = new ArrayList<>(new TreeSet<>(baseFeeRules.stream().map(BaseFeeRule::getCity).toList()));
+        List<String> vehicles = new ArrayList<>(new TreeSet<>(baseFeeRules.stream().map(BaseFeeRule::getVehicle).toList()));
+        Map<String, Integer> vehicleCodes = intern(vehicles);
+
+        double[][] baseFees = new double[cities.size()][vehicles.size()];
+        for (double[] row : baseFees) Arrays.fill(row, Double.NaN);
+        for (BaseFeeRule rule : baseFeeRules) {
+            int city = cities.indexOf(rule.getCity());
+            int vehicle = vehicleCodes.get(rule.getVehicle());
+            if (!Double.isNaN(baseFees[city][vehicle])) {
+                throw new IllegalArgumentException("Several base fees for " + rule.getCity() + " and " + rule.getVehicle());
+            }
+            baseFees[city][vehicle] = rule.getFee();
+        }
+
+        double[] temperatureBounds = bounds(extraFeeRules, ExtraFeeRule.Condition.AIR_TEMPERATURE);
+        double[] windBounds = bounds(extraFeeRules, ExtraFeeRule.Condition.WIND_SPEED);
+        double[][] temperatureExtraFees = bandFees(extraFeeRules, vehicleCodes, ExtraFeeRule.Condition.AIR_TEMPERATURE, temperatureBounds);
+        double[][] windExtraFees = bandFees(extraFeeRules, vehicleCodes, ExtraFeeRule.Condition.WIND_SPEED, windBounds);
+        double[][] phenomenonExtraFees = phenomenonFees(extraFeeRules, vehicleCodes);
+
+        int temperatureAtoms = atoms(temperatureBounds);
+        int windAtoms = atoms(windBounds);
+        double[] fees = new double[cities.size() * vehicles.size() * temperatureAtoms * windAtoms * PHENOMENON_CLASSES];
+        int index = 0;
+        for (int city = 0; city < cities.size(); city++) {
+            for (int vehicle = 0; vehicle < vehicles.size(); vehicle++) {
+                for (int temperature = 0; temperature < temperatureAtoms; temperature++) {
+                    for (int wind = 0; wind < windAtoms; wind++) {
+                        for (int phenomenon = 0; phenomenon < PHENOMENON_CLASSES; phenomenon++) {
+                            // A city without a base fee for the vehicle does not serve it
+                            fees[index++] = Double.isNaN(baseFees[city][vehicle]) ? FORBIDDEN : sum(
+                                    baseFees[city][vehicle],
+                                    temperatureExtraFees[vehicle][temperature],
+                                    windExtraFees[vehicle][wind],
+                                    phenomenonExtraFees[vehicle][phenomenon]);
+                        }
+                    }
+                }
+            }
+        }
+        return new FeeTable(cities, vehicles, temperatureBounds, windBounds, fees);
+    }
+
+    /**
+     * Gets the version of the table, derived from its fees
+     *
+     * @return version, equal for tables with the same fees
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Gets the cities of the table
+     *
+     * @return lowercase city names, sorted, the position of a city is its code
+     */
+    public List<String> cities() {
+        return cities;
+    }
+
+    /**
+     * Gets the vehicle types of the table
+     *
+     * @return lowercase vehicle types, sorted, the position of a vehicle type is its code
+     */
+    public List<String> vehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Gets the code of a city
+     *
+     * @param city city name, matched ignoring case and surrounding whitespace
+     * @return city code, UNKNOWN if the city is not in the table
+     */
+    public int cityCode(String city) {
+        return cityCodes.indexOf(city);
+    }
+
+    /**
+     * Gets the code of a vehicle type
+     *
+     * @param vehicle vehicle type, matched ignoring case and surrounding whitespace
+     * @return vehicle code, UNKNOWN if the vehicle type is not in the table
+     */
+    public int vehicleCode(String vehicle) {
+        return vehicleCodes.indexOf(vehicle);
+    }
+
+    /**
+     * Gets the code of a vehicle type given as a range of a character array, e.g. straight from a request parser
+     *
+     * @param chars characters holding the vehicle type
+     * @param offset start of the vehicle type
+     * @param length length of the vehicle type
+     * @return vehicle code, UNKNOWN if the vehicle type is not in the table
+     */
+    public int vehicleCode(char[] chars, int offset, int length) {
+        return vehicleCodes.indexOf(chars, offset, length);
+    }
+
+    /**
+     * Looks up the total delivery fee
+     *
+     * @param city city code
+     * @param vehicle vehicle code
+     * @param airTemperature air temperature
+     * @param windSpeed wind speed
+     * @param phenomenon class of the weather phenomenon
+     * @return total delivery fee, FORBIDDEN if usage of the vehicle is forbidden or a code is UNKNOWN
+     */
+    public double fee(int city, int vehicle, double airTemperature, double windSpeed, PhenomenonClass phenomenon) {
+        if (city < 0 || city >= cityCodes.size() || vehicle < 0 || vehicle >= vehicleCodes.size()) return FORBIDDEN;
+        return fees[(city * vehicleCodes.size() + vehicle) * vehicleStride
+                + atom(temperatureBounds, airTemperature) * temperatureStride
+                + atom(windBounds, windSpeed) * PHENOMENON_CLASSES
+                + phenomenon.ordinal()];
+    }
+
+    /**
+     * Tables are equal when they have the same cities, vehicles, bounds and fees
+     */
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof FeeTable table
+                && version == table.version
+                && cities.equals(table.cities)
+                && vehicles.equals(table.vehicles)
+                && Arrays.equals(temperatureBounds, table.temperatureBounds)
+                && Arrays.equals(windBounds, table.windBounds)
+                && Arrays.equals(fees, table.fees);
+    }
+
+    @Override
+    public int hashCode() {
+        return version;
+    }
+
+    // Atom of a value: 2i + 1 if it is the bound i, 2i if it is between the bounds i - 1 and i, the last atom if it
+    // is not a number. A linear scan, as there are only a few bounds, which beats a binary search
+    private static int atom(double[] bounds, double value) {
+        if (Double.isNaN(value)) return nanAtom(bounds);
+        int atom = 0;
+        for (double bound : bounds) {
+            if (value < bound) return atom;
+            if (value == bound) return atom + 1;
+            atom += 2;
+        }
+        return atom;
+    }
+
+    private static int atoms(double[] bounds) {
+        return 2 * bounds.length + 2;
+    }
+
+    // Atom of a value that is not a number, no band covers it
+    private static int nanAtom(double[] bounds) {
+        return 2 * bounds.length + 1;
+    }
+
+    // Rejects base fee rules without a city, vehicle or a fee that is a non-negative number
+    private static void validate(BaseFeeRule rule) {
+        if (rule.getCity() == null || rule.getVehicle() == null || !validFee(rule.getFee())) {
+            throw new IllegalArgumentException("Invalid base fee rule: " + rule);
+        }
+    }
+
+    // Rejects extra fee rules without a vehicle or condition, phenomenon bands without a phenomenon class,
+    // and allowed bands without a fee that is a non-negative number
+    private static void validate(ExtraFeeRule rule) {
+        if (rule.getVehicle() == null || rule.getCondition() == null
+                || (rule.getCondition() == ExtraFeeRule.Condition.PHENOMENON && rule.getPhenomenon() == null)
+                || (!rule.isForbidden() && !validFee(rule.getFee()))) {
+            throw new IllegalArgumentException("Invalid extra fee rule: " + rule);
+        }
+    }
+
+    // Fees are finite and not negative, so no sum of them is ever FORBIDDEN
+    private static boolean validFee(Double fee) {
+        return fee != null && Double.isFinite(fee) && fee >= 0.0;
+    }
+
+    // Sorted distinct bounds of the bands of a condition
+    private static double[] bounds(List<ExtraFeeRule> rules, ExtraFeeRule.Condition condition) {
+        TreeSet<Double> bounds = new TreeSet<>();
+        for (ExtraFeeRule rule : rules) {
+            if (rule.getCondition() != condition) continue;
+            if (rule.getMinValue() != null) bounds.add(rule.getMinValue() + 0.0);
+            if (rule.getMaxValue() != null) bounds.add(rule.getMaxValue() + 0.0);
+        }
+        return bounds.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    // Extra fee per vehicle and atom of a measured condition, zero where no band applies
+    private static double[][] bandFees(List<ExtraFeeRule> rules, Map<String, Integer> vehicleCodes,
+                                       ExtraFeeRule.Condition condition, double[] bounds) {
+        double[][] extraFees = new double[vehicleCodes.size()][atoms(bounds)];
+        boolean[][] covered = new boolean[vehicleCodes.size()][atoms(bounds)];
+        for (ExtraFeeRule rule : rules) {
+            Integer vehicle = vehicleCodes.get(rule.getVehicle());
+            if (rule.getCondition() != condition || vehicle == null) continue;
+            for (int atom = 0; atom < atoms(bounds); atom++) {
+                if (!covers(rule, bounds, atom)) continue;
+                if (covered[vehicle][atom]) {
+                    throw new IllegalArgumentException("Overlapping " + condition + " bands for " + rule.getVehicle());
+                }
+                covered[vehicle][atom] = true;
+                extraFees[vehicle][atom] = rule.isForbidden() ? FORBIDDEN : rule.getFee();
+            }
+        }
+        return extraFees;
+    }
+
+    // Whether the band covers the atom, bands never cover an atom partially as all of their bounds are bounds
+    private static boolean covers(ExtraFeeRule rule, double[] bounds, int atom) {
+        if (atom == nanAtom(bounds)) return false;
+        if (atom % 2 == 1) {
+            double value = bounds[atom / 2];
+            return (rule.getMinValue() == null || value > rule.getMinValue() || (value == rule.getMinValue() && rule.isMinInclusive()))
+                    && (rule.getMaxValue() == null || value < rule.getMaxValue() || (value == rule.getMaxValue() && rule.isMaxInclusive()));
+        }
+        double lower = atom == 0 ? Double.NEGATIVE_INFINITY : bounds[atom / 2 - 1];
+        double upper = atom / 2 == bounds.length ? Double.POSITIVE_INFINITY : bounds[atom / 2];
+        return (rule.getMinValue() == null || rule.getMinValue() <= lower)
+                && (rule.getMaxValue() == null || rule.getMaxValue() >= upper);
+    }
+
+    // Extra fee per vehicle and phenomenon class, zero where no band applies
+    private static double[][] phenomenonFees(List<ExtraFeeRule> rules, Map<String, Integer> vehicleCodes) {
+        double[][] extraFees = new double[vehicleCodes.size()][PHENOMENON_CLASSES];
+        boolean[][] covered = new boolean[vehicleCodes.size()][PHENOMENON_CLASSES];
+        for (ExtraFeeRule rule : rules) {
+            Integer vehicle = vehicleCodes.get(rule.getVehicle());
+            if (rule.getCondition() != ExtraFeeRule.Condition.PHENOMENON || vehicle == null) continue;
+            int phenomenon = rule.getPhenomenon().ordinal();
+            if (covered[vehicle][phenomenon]) {
+                throw new IllegalArgumentException("Several " + rule.getPhenomenon() + " fees for " + rule.getVehicle());
+            }
+            covered[vehicle][phenomenon] = true;
+            extraFees[vehicle][phenomenon] = rule.isForbidden() ? FORBIDDEN : rule.getFee();
+        }
+        return extraFees;
+    }
+
+    // Sum of fee components, FORBIDDEN if any of them is
+    private static double sum(double... components) {
+        double total = 0.0;
+        for (double component : components) {
+            if (component == FORBIDDEN) return FORBIDDEN;
+            total += component;
+        }
+        return total;
+    }
+
+    // Maps every name to its position in the list
+    private static Map<String, Integer> intern(List<String> names) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            codes.put(names.get(i), i);
+        }
+        return Map.copyOf(codes);
+    }
+}
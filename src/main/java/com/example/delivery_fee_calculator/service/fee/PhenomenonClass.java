@@ -0,0 +1,46 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+/**
+ * Classes of weather phenomena that are treated the same way by the delivery fee business rules.
+ * <p>
+ *     Weather records are classified once, when they are imported, and store their class next to the phenomenon text,
+ *     so the fee calculations compare classes instead of scanning the text. The ordinal of a class is its stored
+ *     code, so classes must only ever be appended.
+ * </p>
+ */
+public enum PhenomenonClass {
+    /** No extra fee, e.g. clear, overcast, mist */
+    NONE,
+    /** Rain related phenomena */
+    RAIN,
+    /** Snow or sleet related phenomena */
+    SNOW_SLEET,
+    /** Glaze, hail or thunder, usage of light vehicles is forbidden */
+    FORBIDDEN;
+
+    /**
+     * Classifies a free-text weather phenomenon, ignoring case.
+     * <p>
+     *     Snow and sleet take precedence over rain, which takes precedence over the forbidden phenomena.
+     *     Does not allocate, so it is safe to call on the request path.
+     * </p>
+     *
+     * @param phenomenon weather phenomenon as given by the weather portal
+     * @return class of the phenomenon, NONE for null or unknown phenomena
+     */
+    public static PhenomenonClass classify(String phenomenon) {
+        if (phenomenon == null) return NONE;
+        if (containsIgnoreCase(phenomenon, "snow") || containsIgnoreCase(phenomenon, "sleet")) return SNOW_SLEET;
+        if (containsIgnoreCase(phenomenon, "rain")) return RAIN;
+        if (containsIgnoreCase(phenomenon, "glaze") || containsIgnoreCase(phenomenon, "hail") || containsIgnoreCase(phenomenon, "thunder")) return FORBIDDEN;
+        return NONE;
+    }
+
+    // Case-insensitive String.contains, without creating a lowercase copy of the text
+    private static boolean containsIgnoreCase(String text, String word) {
+        for (int i = 0; i <= text.length() - word.length(); i++) {
+            if (text.regionMatches(true, i, word, 0, word.length())) return true;
+        }
+        return false;
+    }
+}
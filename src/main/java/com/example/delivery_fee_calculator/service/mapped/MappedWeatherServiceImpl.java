@@ -0,0 +1,288 @@
+package com.example.delivery_fee_calculator.service.mapped;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import com.example.delivery_fee_calculator.service.WeatherSnapshotChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Weather service that stores observations in memory-mapped files instead of the database.
+ * <p>
+ *     Every station has a directory of append-only partition files, one per calendar year (UTC), holding fixed-size
+ *     records sorted by timestamp, see {@link ObservationPartition}. Phenomena and WMO codes are stored as codes of a
+ *     shared {@link StringDictionary}. Lookups at a point in time are a binary search in the partition of its year,
+ *     falling back to the newest record of an earlier year, without any database round-trip.
+ * </p>
+ * <p>
+ *     Active with the {@code mapped} profile, in place of the database backed services. The directory is defined
+ *     in application-mapped.properties, key in use: {@code weather.store.directory}.
+ *     Every change of the newest record of a station is published as a {@link WeatherSnapshotChangedEvent}.
+ * </p>
+ */
+@Slf4j
+@Primary
+@Profile("mapped")
+@Service
+public class MappedWeatherServiceImpl implements WeatherService {
+
+    private static final String DICTIONARY_FILE = "strings.txt";
+    private static final String PARTITION_SUFFIX = ".obs";
+
+    private final Path directory;
+
+    private final StringDictionary dictionary;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Station name -> partitions by year
+    private final Map<String, NavigableMap<Integer, ObservationPartition>> partitionsByStation = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a MappedWeatherServiceImpl storing observations in the given directory, opening the stored ones.
+     *
+     * @param directory directory of the observation files, created if it does not exist
+     * @param eventPublisher publisher of the snapshot changes
+     * @throws IOException if the directory or its files can not be read
+     */
+    public MappedWeatherServiceImpl(@Value("${weather.store.directory}") Path directory,
+                                    ApplicationEventPublisher eventPublisher) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.eventPublisher = eventPublisher;
+        this.dictionary = StringDictionary.open(directory.resolve(DICTIONARY_FILE));
+
+        try (DirectoryStream<Path> stationDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path stationDirectory : stationDirectories) {
+                String station = URLDecoder.decode(stationDirectory.getFileName().toString(), StandardCharsets.UTF_8);
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(stationDirectory, "*" + PARTITION_SUFFIX)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        int year = Integer.parseInt(name.substring(0, name.length() - PARTITION_SUFFIX.length()));
+                        partitions(station).put(year, ObservationPartition.open(file));
+                    }
+                }
+            }
+        }
+        log.info("Opened observation store {} with {} stations", directory, partitionsByStation.size());
+    }
+
+    /**
+     * Closes all partition files
+     *
+     * @throws IOException if a file can not be closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        for (NavigableMap<Integer, ObservationPartition> partitions : partitionsByStation.values()) {
+            for (ObservationPartition partition : partitions.values()) partition.close();
+        }
+    }
+
+    /**
+     * Saves weather information into its partition file
+     *
+     * @param weather weather information object for saving
+     */
+    @Override
+    public void saveWeather(Weather weather) {
+        saveAllWeather(List.of(weather));
+    }
+
+    /**
+     * Saves many weather information objects into their partition files, skipping already stored ones.
+     * <p>
+     *     Written partitions are flushed to the storage device once all objects are stored.
+     * </p>
+     *
+     * @param weatherList weather information objects for saving
+     * @return Returns the weather information objects that were stored
+     */
+    @Override
+    public synchronized List<Weather> saveAllWeather(List<Weather> weatherList) {
+        List<Weather> storedWeatherList = new ArrayList<>();
+        Set<ObservationPartition> written = new HashSet<>();
+        Map<String, Weather> latestBefore = latestByStation();
+        try {
+            for (Weather weather : weatherList) {
+                ObservationPartition partition = partition(weather.getName(), weather.getTimestamp());
+                ObservationPartition.Observation observation = new ObservationPartition.Observation(
+                        weather.getTimestamp(), weather.getTemp(), weather.getWind(),
+                        dictionary.code(weather.getPhenomenon()), dictionary.code(weather.getWmo()));
+                if (partition.insert(observation)) {
+                    storedWeatherList.add(weather);
+                    written.add(partition);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            written.forEach(ObservationPartition::force);
+        }
+
+        Map<String, Weather> latestAfter = latestByStation();
+        if (!latestAfter.equals(latestBefore)) eventPublisher.publishEvent(new WeatherSnapshotChangedEvent(latestAfter));
+        return storedWeatherList;
+    }
+
+    /**
+     * Gets all weather information of specific station, ordered by timestamp descending order
+     *
+     * @param station Takes station name as input
+     * @return Returns list of Weather entities
+     */
+    @Override
+    public List<Weather> fetchWeatherByStation(String station) {
+        List<Weather> weatherList = new ArrayList<>();
+        for (ObservationPartition partition : partitionsOf(station).descendingMap().values()) {
+            for (ObservationPartition.Observation observation : partition.allDescending()) {
+                weatherList.add(weather(station, observation));
+            }
+        }
+        return weatherList;
+    }
+
+    /**
+     * Gets the newest weather information of specific station
+     *
+     * @param station Takes station name as input
+     * @return Returns the latest Weather entity, null if the station has no records
+     */
+    @Override
+    public Weather fetchLatestWeatherByStation(String station) {
+        for (ObservationPartition partition : partitionsOf(station).descendingMap().values()) {
+            ObservationPartition.Observation observation = partition.last();
+            if (observation != null) return weather(station, observation);
+        }
+        return null;
+    }
+
+    /**
+     * Gets weather information of specific station and timestamp
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return Returns a Weather entity, null if there is none
+     */
+    @Override
+    public Weather fetchWeatherByStationAndTimestamp(String station, Long timestamp) {
+        ObservationPartition partition = partitionsOf(station).get(year(timestamp));
+        ObservationPartition.Observation observation = partition == null ? null : partition.exact(timestamp);
+        return observation == null ? null : weather(station, observation);
+    }
+
+    /**
+     * Gets the newest weather information of specific station observed at or before given timestamp
+     *
+     * @param station takes station name as input
+     * @param timestamp takes timestamp as input
+     * @return Returns a Weather entity, null if there is none
+     */
+    @Override
+    public Weather fetchWeatherByStationAtTime(String station, Long timestamp) {
+        // Partition of the year of the timestamp first, then the newest record of an earlier year
+        for (ObservationPartition partition : partitionsOf(station).headMap(year(timestamp), true).descendingMap().values()) {
+            ObservationPartition.Observation observation = partition.floor(timestamp);
+            if (observation != null) return weather(station, observation);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the weather information of specific station in effect during a period
+     *
+     * @param station takes station name as input
+     * @param from start of the period
+     * @param until end of the period, inclusive
+     * @return Returns list of Weather entities, oldest first
+     */
+    @Override
+    public List<Weather> fetchWeatherByStationDuring(String station, Long from, Long until) {
+        List<Weather> weatherList = new ArrayList<>();
+        Weather inEffect = fetchWeatherByStationAtTime(station, from);
+        if (inEffect != null) weatherList.add(inEffect);
+        // Only the partitions of the years of the period
+        if (from < until) {
+            for (ObservationPartition partition : partitionsOf(station).subMap(year(from), true, year(until), true).values()) {
+                for (ObservationPartition.Observation observation : partition.between(from, until)) {
+                    weatherList.add(weather(station, observation));
+                }
+            }
+        }
+        return weatherList;
+    }
+
+    // Newest weather record of every station
+    private Map<String, Weather> latestByStation() {
+        Map<String, Weather> latest = new HashMap<>();
+        for (String station : partitionsByStation.keySet()) {
+            Weather weather = fetchLatestWeatherByStation(station);
+            if (weather != null) latest.put(station, weather);
+        }
+        return Map.copyOf(latest);
+    }
+
+    // Partition of the station holding the timestamp, created if it does not exist
+    private ObservationPartition partition(String station, long timestamp) throws IOException {
+        NavigableMap<Integer, ObservationPartition> partitions = partitions(station);
+        int year = year(timestamp);
+        ObservationPartition partition = partitions.get(year);
+        if (partition == null) {
+            Path stationDirectory = Files.createDirectories(directory.resolve(URLEncoder.encode(station, StandardCharsets.UTF_8)));
+            partition = ObservationPartition.open(stationDirectory.resolve(year + PARTITION_SUFFIX));
+            partitions.put(year, partition);
+        }
+        return partition;
+    }
+
+    private NavigableMap<Integer, ObservationPartition> partitions(String station) {
+        return partitionsByStation.computeIfAbsent(station, s -> new ConcurrentSkipListMap<>());
+    }
+
+    // Partitions of the station, empty if it has none, without registering the station
+    private NavigableMap<Integer, ObservationPartition> partitionsOf(String station) {
+        return partitionsByStation.getOrDefault(station, Collections.emptyNavigableMap());
+    }
+
+    // The class of the phenomenon is kept by the dictionary, classified once per code rather than on every read
+    private Weather weather(String station, ObservationPartition.Observation observation) {
+        return Weather.builder()
+                .name(station)
+                .wmo(dictionary.value(observation.wmoCode()))
+                .temp(observation.airTemperature())
+                .wind(observation.windSpeed())
+                .phenomenon(dictionary.value(observation.phenomenonCode()))
+                .phenomenonClass(dictionary.phenomenonClass(observation.phenomenonCode()))
+                .timestamp(observation.timestamp())
+                .build();
+    }
+
+    // Calendar year (UTC) of a timestamp in epoch seconds
+    private static int year(long timestamp) {
+        return LocalDate.ofEpochDay(Math.floorDiv(timestamp, 86_400)).getYear();
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.delivery_fee_calculator.service.mapped;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Memory-mapped file of fixed-size observation records of one station, sorted by timestamp.
+ *
+ * <p>
+ *     File layout, all values big-endian:
+ * </p>
+ * <pre>
+ *   header:  int magic, int record size, long record count
+ *   record:  long timestamp, double air temperature, double wind speed, int phenomenon code, int WMO code
+ * </pre>
+ * <p>
+ *     Records are read straight from the mapping, without copying the file content. Lookups are binary searches,
+ *     run as optimistic reads which are retried under a read lock only if an insert happened meanwhile.
+ *     Records are normally appended, an older record is inserted in place by shifting the newer ones.
+ *     The mapping is doubled whenever it is full.
+ * </p>
+ */
+final class ObservationPartition implements AutoCloseable {
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int MAGIC = 0x574F4253; // "WOBS"
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FileChannel channel;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Replaced by a larger mapping when full, a reader may keep using the previous one
+    private volatile MappedByteBuffer buffer;
+
+    // Records in use, only ever grows, so the mapping read after it always holds them
+    private volatile int count;
+
+    private ObservationPartition(FileChannel channel, MappedByteBuffer buffer, int count) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Opens a partition file, creating it if it does not exist
+     *
+     * @param file path of the partition file
+     * @return the opened partition
+     * @throws IOException if the file can not be mapped or is not a partition file
+     */
+    static ObservationPartition open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset(INITIAL_CAPACITY));
+                buffer.putInt(0, MAGIC).putInt(4, RECORD_SIZE).putLong(COUNT_OFFSET, 0);
+                return new ObservationPartition(channel, buffer, 0);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            long count = buffer.getLong(COUNT_OFFSET);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_SIZE || count < 0 || offset(count) > channel.size()) {
+                throw new IOException("Not an observation partition file: " + file);
+            }
+            return new ObservationPartition(channel, buffer, (int) count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Returns the newest observation, null if there is none
+     */
+    Observation last() {
+        return read(() -> {
+            int n = count;
+            return n == 0 ? null : observation(buffer, n - 1);
+        });
+    }
+
+    /**
+     * @param timestamp point in time
+     * @return Returns the newest observation at or before the timestamp, null if there is none
+     */
+    Observation floor(long timestamp) {
+        return read(() -> {
+            int n = count;
+            MappedByteBuffer b = buffer;
+            int i = insertionPoint(b, n, timestamp);
+            // An exact match is the floor, otherwise the record before the insertion point
+            if (i < n && timestamp(b, i) == timestamp) return observation(b, i);
+            return i == 0 ? null : observation(b, i - 1);
+        });
+    }
+
+    /**
+     * @param timestamp point in time
+     * @return Returns the observation at exactly the timestamp, null if there is none
+     */
+    Observation exact(long timestamp) {
+        return read(() -> {
+            int n = count;
+            MappedByteBuffer b = buffer;
+            int i = insertionPoint(b, n, timestamp);
+            return i < n && timestamp(b, i) == timestamp ? observation(b, i) : null;
+        });
+    }
+
+    /**
+     * @param after point in time, exclusive
+     * @param until point in time, inclusive
+     * @return Returns the observations after the first and at or before the second point in time, oldest first
+     */
+    List<Observation> between(long after, long until) {
+        return read(() -> {
+            int n = count;
+            MappedByteBuffer b = buffer;
+            List<Observation> observations = new ArrayList<>();
+            for (int i = insertionPoint(b, n, after + 1); i < n && timestamp(b, i) <= until; i++) {
+                observations.add(observation(b, i));
+            }
+            return observations;
+        });
+    }
+
+    /**
+     * @return Returns all observations, newest first
+     */
+    List<Observation> allDescending() {
+        return read(() -> {
+            int n = count;
+            MappedByteBuffer b = buffer;
+            List<Observation> observations = new ArrayList<>(n);
+            for (int i = n - 1; i >= 0; i--) observations.add(observation(b, i));
+            return observations;
+        });
+    }
+
+    /**
+     * Inserts an observation at its place by timestamp, unless there already is one at the same timestamp
+     *
+     * @param observation observation to insert
+     * @return Returns true if it was inserted
+     * @throws IOException if the mapping can not be grown
+     */
+    boolean insert(Observation observation) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            int n = count;
+            int i = insertionPoint(buffer, n, observation.timestamp());
+            if (i < n && timestamp(buffer, i) == observation.timestamp()) return false;
+
+            if (offset(n + 1) > buffer.capacity()) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset(2L * (n + 1)));
+            }
+            MappedByteBuffer b = buffer;
+            // Shift newer records by one, the source is copied as a whole before it is written
+            if (i < n) b.put(offset(i + 1), b, offset(i), (n - i) * RECORD_SIZE);
+
+            int offset = offset(i);
+            b.putLong(offset, observation.timestamp())
+                    .putDouble(offset + 8, observation.airTemperature())
+                    .putDouble(offset + 16, observation.windSpeed())
+                    .putInt(offset + 24, observation.phenomenonCode())
+                    .putInt(offset + 28, observation.wmoCode());
+            b.putLong(COUNT_OFFSET, n + 1);
+            count = n + 1;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the changes of the mapping to the storage device
+     */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Runs the reader optimistically, and again under a read lock if an insert happened meanwhile
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = reader.get();
+            if (lock.validate(stamp)) return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Index of the first of n records with a timestamp at or after the given one, n if there is none
+    private static int insertionPoint(MappedByteBuffer buffer, int n, long timestamp) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp(buffer, mid) < timestamp) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static long timestamp(MappedByteBuffer buffer, int i) {
+        return buffer.getLong(offset(i));
+    }
+
+    private static Observation observation(MappedByteBuffer buffer, int i) {
+        int offset = offset(i);
+        return new Observation(buffer.getLong(offset), buffer.getDouble(offset + 8), buffer.getDouble(offset + 16),
+                buffer.getInt(offset + 24), buffer.getInt(offset + 28));
+    }
+
+    private static int offset(long i) {
+        return Math.toIntExact(HEADER_SIZE + i * RECORD_SIZE);
+    }
+
+    /**
+     * Observation record as stored in a partition file, text values are codes of the {@link StringDictionary}.
+     *
+     * @param timestamp time of observation, epoch seconds
+     * @param airTemperature air temperature
+     * @param windSpeed wind speed
+     * @param phenomenonCode code of the weather phenomenon
+     * @param wmoCode code of the WMO code of the station
+     */
+    record Observation(long timestamp, double airTemperature, double windSpeed, int phenomenonCode, int wmoCode) {
+    }
+}
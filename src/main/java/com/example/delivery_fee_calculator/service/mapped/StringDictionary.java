@@ -0,0 +1,102 @@
+package com.example.delivery_fee_calculator.service.mapped;
+
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only dictionary of the text values of observations, so records can hold a fixed-size code instead.
+ *
+ * <p>
+ *     Stored as a UTF-8 text file with one value per line, the code of a value is its line number starting from 0.
+ *     There are only a few dozen distinct phenomena and WMO codes, so the whole dictionary is kept in memory.
+ *     Every value is classified as a phenomenon once, when it is read or added, so the class of a stored phenomenon
+ *     is found by its code.
+ * </p>
+ */
+final class StringDictionary {
+
+    private final Path file;
+
+    // Value -> code, and code -> value and its class, the array is replaced as a whole when a value is added
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile Entry[] entries;
+
+    private StringDictionary(Path file, List<String> values) {
+        this.file = file;
+        this.entries = new Entry[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            entries[i] = new Entry(values.get(i));
+            codes.put(values.get(i), i);
+        }
+    }
+
+    /**
+     * Opens a dictionary file, an empty dictionary if it does not exist
+     *
+     * @param file path of the dictionary file
+     * @return the opened dictionary
+     * @throws IOException if the file can not be read
+     */
+    static StringDictionary open(Path file) throws IOException {
+        return new StringDictionary(file, Files.exists(file) ? Files.readAllLines(file, StandardCharsets.UTF_8) : new ArrayList<>());
+    }
+
+    /**
+     * Gets the code of a value, adding the value if it is new
+     *
+     * @param value text value, line breaks are stored as spaces
+     * @return Returns the code of the value
+     * @throws IOException if a new value can not be stored
+     */
+    int code(String value) throws IOException {
+        String line = value.replace('\n', ' ').replace('\r', ' ');
+        Integer code = codes.get(line);
+        return code != null ? code : add(line);
+    }
+
+    /**
+     * @param code code of a value
+     * @return Returns the value of the code
+     */
+    String value(int code) {
+        return entries[code].value();
+    }
+
+    /**
+     * @param code code of a phenomenon
+     * @return Returns the class of the phenomenon of the code
+     */
+    PhenomenonClass phenomenonClass(int code) {
+        return entries[code].phenomenonClass();
+    }
+
+    private synchronized int add(String line) throws IOException {
+        Integer code = codes.get(line);
+        if (code != null) return code;
+
+        Files.writeString(file, line + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Entry[] extended = Arrays.copyOf(entries, entries.length + 1);
+        extended[entries.length] = new Entry(line);
+        entries = extended;
+        codes.put(line, entries.length - 1);
+        return entries.length - 1;
+    }
+
+    // Value of a code and its class, were it a phenomenon
+    private record Entry(String value, PhenomenonClass phenomenonClass) {
+
+        Entry(String value) {
+            this(value, PhenomenonClass.classify(value));
+        }
+    }
+}
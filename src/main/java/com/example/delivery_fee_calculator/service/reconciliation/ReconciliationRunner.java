@@ -0,0 +1,56 @@
+package com.example.delivery_fee_calculator.service.reconciliation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Recomputes the delivery fees of a file of orders at startup, for audits and reconciliation.
+ *
+ * <p>
+ *     Only active when the input file is configured, e.g.
+ *     {@code --delivery.reconciliation.input=./orders.csv --delivery.reconciliation.output=./fees.csv}
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("delivery.reconciliation.input")
+public class ReconciliationRunner implements ApplicationRunner {
+
+    private final ReconciliationService reconciliationService;
+
+    private final Path input;
+
+    private final Path output;
+
+    /**
+     * Constructs a ReconciliationRunner with the given ReconciliationService and files.
+     *
+     * @param reconciliationService the ReconciliationService bean injected by Spring
+     * @param input the orders file, key in use: {@code delivery.reconciliation.input}
+     * @param output the file the fees are written to, key in use: {@code delivery.reconciliation.output}
+     */
+    public ReconciliationRunner(ReconciliationService reconciliationService,
+                                @Value("${delivery.reconciliation.input}") Path input,
+                                @Value("${delivery.reconciliation.output}") Path output) {
+        this.reconciliationService = reconciliationService;
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Runs the reconciliation once the application has started
+     */
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.nanoTime();
+        ReconciliationService.Summary summary = reconciliationService.reconcile(input, output);
+        log.info("Reconciliation finished, {} orders, {} errors in {} ms",
+                summary.orders(), summary.errors(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
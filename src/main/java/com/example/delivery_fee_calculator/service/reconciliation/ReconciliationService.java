@@ -0,0 +1,349 @@
+package com.example.delivery_fee_calculator.service.reconciliation;
+
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import com.example.delivery_fee_calculator.service.fee.DeliveryFeeService;
+import com.example.delivery_fee_calculator.service.fee.FeeTable;
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Service that recomputes the delivery fees of many orders from the weather in effect when they were ordered,
+ * for audits and reconciliation of billed fees.
+ * <p>
+ *     Orders are read from a CSV file with the columns {@code order_id,city,vehicle,timestamp}, timestamps in epoch
+ *     seconds, an optional header line starting with {@code order_id} is skipped. Fields are not quoted, so an
+ *     order id can not contain a comma.
+ * </p>
+ * <p>
+ *     Orders are read in chunks of {@code delivery.reconciliation.chunk-size}, so memory stays bounded by the chunk
+ *     size however large the file is. Every chunk is sorted by station and timestamp, and only the weather of each
+ *     station in effect between its first and last order of the chunk is read, compacted into arrays, rather than
+ *     the whole history of the station. The orders are merged against it: the weather in effect for the first
+ *     order of a run is found by a binary search, for the following ones by walking forward. Chunks are quoted with
+ *     fork/join across all cores, with one fee table for the whole file, the same lookup {@link DeliveryFeeService}
+ *     quotes with.
+ * </p>
+ * <p>
+ *     Results are streamed to a CSV file with the columns {@code order_id,fee,error}, one line per order, holding
+ *     either the fee or the error the order would have been quoted with. Within a chunk orders are written by
+ *     station and timestamp, not in the order of the input. Lines that are not a valid order are answered with
+ *     {@link #INVALID_RECORD}, with the line number instead of the order id if there is none.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+
+    /** Error of a line that is not a valid order */
+    public static final String INVALID_RECORD = "Invalid record";
+
+    // Orders are sorted by a key holding the timestamp in the high bits and the position in the chunk in the low bits
+    private static final int POSITION_BITS = 24;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    private static final long MAX_TIMESTAMP = Long.MAX_VALUE >>> POSITION_BITS;
+
+    // Orders a fork/join task quotes itself instead of splitting them further
+    private static final int LEAF_SIZE = 8192;
+
+    private static final String HEADER = "order_id";
+
+    // Index of the station of a city that is not known
+    private static final int UNKNOWN_STATION = -1;
+
+    // Fee of an order there is no weather for
+    private static final double NO_WEATHER = Double.NaN;
+
+    private final DeliveryFeeService deliveryFeeService;
+
+    private final WeatherService weatherService;
+
+    private final CityRegistry cityRegistry;
+
+    private final int chunkSize;
+
+    /**
+     * Constructs a ReconciliationService with the given services.
+     *
+     * @param deliveryFeeService the DeliveryFeeService bean providing the fee table
+     * @param weatherService the WeatherService bean providing the weather history
+     * @param cityRegistry the CityRegistry bean providing the cities and their stations
+     * @param chunkSize orders held in memory at once, key in use: {@code delivery.reconciliation.chunk-size}
+     */
+    public ReconciliationService(DeliveryFeeService deliveryFeeService, WeatherService weatherService, CityRegistry cityRegistry,
+                                 @Value("${delivery.reconciliation.chunk-size}") int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > POSITION_MASK + 1) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + (POSITION_MASK + 1) + ": " + chunkSize);
+        }
+        this.deliveryFeeService = deliveryFeeService;
+        this.weatherService = weatherService;
+        this.cityRegistry = cityRegistry;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Recomputes the fees of all orders of the input file and writes them to the output file
+     *
+     * @param input CSV file of orders
+     * @param output CSV file the fees are written to, replaced if it exists
+     * @return Returns the amount of orders read and of the orders answered with an error
+     * @throws IOException if a file can not be read or written
+     */
+    public Summary reconcile(Path input, Path output) throws IOException {
+        // One fee table for the whole file, so every order is quoted by the same rules
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        List<String> stations = new ArrayList<>(cityRegistry.stations());
+        Map<String, Integer> stationIndexes = new HashMap<>();
+        for (int station = 0; station < stations.size(); station++) stationIndexes.put(stations.get(station), station);
+        ToIntFunction<String> stationIndex = city -> stationIndexes.getOrDefault(cityRegistry.station(city), UNKNOWN_STATION);
+        log.info("Reconciliation of {} started", input);
+
+        long orders = 0;
+        long errors = 0;
+        Chunk chunk = new Chunk(chunkSize, stations.size());
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("order_id,fee,error\n");
+            long lineNumber = 0;
+            String line;
+            boolean more = true;
+            while (more) {
+                chunk.clear();
+                // Invalid lines and unknown cities are answered right away, valid orders are collected in the chunk
+                while (chunk.size < chunkSize && (more = (line = reader.readLine()) != null)) {
+                    lineNumber++;
+                    if (line.isBlank() || (lineNumber == 1 && line.startsWith(HEADER))) continue;
+                    orders++;
+                    String error = chunk.add(line, lineNumber, feeTable, stationIndex);
+                    if (error != null) {
+                        errors++;
+                        writeError(writer, chunk.rejectedId, error);
+                    }
+                }
+                if (chunk.size == 0) continue;
+
+                chunk.sort();
+                List<QuoteTask> tasks = new ArrayList<>(stations.size());
+                for (int station = 0; station < stations.size(); station++) {
+                    int from = chunk.stationStarts[station];
+                    int to = chunk.stationStarts[station + 1];
+                    if (from == to) continue;
+                    // Weather in effect from the first to the last order of the station, orders are sorted by timestamp
+                    History history = History.of(weatherService.fetchWeatherByStationDuring(stations.get(station),
+                            chunk.keys[from] >>> POSITION_BITS, chunk.keys[to - 1] >>> POSITION_BITS));
+                    tasks.add(new QuoteTask(chunk, history, feeTable, from, to));
+                }
+                ForkJoinTask.invokeAll(tasks);
+                errors += chunk.write(writer);
+            }
+        }
+        log.info("Reconciliation of {} finished, {} orders, {} errors, written to {}", input, orders, errors, output);
+        return new Summary(orders, errors);
+    }
+
+    private static void writeError(Writer writer, String orderId, String error) throws IOException {
+        writer.write(orderId);
+        writer.write(",,");
+        writer.write(error);
+        writer.write('\n');
+    }
+
+    /**
+     * Outcome of a reconciliation
+     *
+     * @param orders amount of orders read, invalid lines included
+     * @param errors amount of orders answered with an error instead of a fee
+     */
+    public record Summary(long orders, long errors) {
+    }
+
+    /**
+     * Weather history of a station during the orders of a chunk, oldest first, with the phenomena classified up front
+     */
+    private record History(long[] timestamps, double[] temperatures, double[] winds, PhenomenonClass[] phenomena) {
+
+        // Compacts the weather of a station, given oldest first
+        static History of(List<Weather> weatherList) {
+            int size = weatherList.size();
+            History history = new History(new long[size], new double[size], new double[size], new PhenomenonClass[size]);
+            for (int i = 0; i < size; i++) {
+                Weather weather = weatherList.get(i);
+                history.timestamps[i] = weather.getTimestamp();
+                history.temperatures[i] = weather.getTemp();
+                history.winds[i] = weather.getWind();
+                history.phenomena[i] = weather.getPhenomenonClass();
+            }
+            return history;
+        }
+
+        // Position of the newest record observed at or before the timestamp, -1 if there is none
+        int inEffectAt(long timestamp) {
+            int position = Arrays.binarySearch(timestamps, timestamp);
+            return position >= 0 ? position : -position - 2;
+        }
+    }
+
+    /**
+     * Quotes a range of the sorted orders of a chunk, all of one station, merging them against the history of the
+     * station. Large ranges are split in halves, quoted in parallel.
+     */
+    private static final class QuoteTask extends RecursiveAction {
+
+        private final Chunk chunk;
+        private final History history;
+        private final FeeTable feeTable;
+        private final int from;
+        private final int to;
+
+        QuoteTask(Chunk chunk, History history, FeeTable feeTable, int from, int to) {
+            this.chunk = chunk;
+            this.history = history;
+            this.feeTable = feeTable;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new QuoteTask(chunk, history, feeTable, from, middle), new QuoteTask(chunk, history, feeTable, middle, to));
+                return;
+            }
+            if (from == to) return;
+
+            long[] timestamps = history.timestamps();
+            int inEffect = history.inEffectAt(chunk.keys[from] >>> POSITION_BITS);
+            for (int k = from; k < to; k++) {
+                long timestamp = chunk.keys[k] >>> POSITION_BITS;
+                int i = (int) (chunk.keys[k] & POSITION_MASK);
+                // Orders are sorted by timestamp, so the record in effect only ever moves forward
+                while (inEffect + 1 < timestamps.length && timestamps[inEffect + 1] <= timestamp) inEffect++;
+                chunk.fees[i] = inEffect < 0 ? NO_WEATHER : feeTable.fee(chunk.cities[i], chunk.vehicles[i],
+                        history.temperatures()[inEffect], history.winds()[inEffect], history.phenomena()[inEffect]);
+            }
+        }
+    }
+
+    /**
+     * Orders of a chunk, by their position in the chunk, and their sort keys grouped by station.
+     * Allocated once and reused for every chunk.
+     */
+    private static final class Chunk {
+
+        private final String[] orderIds;
+        private final int[] stations;
+        private final int[] cities;
+        private final int[] vehicles;
+        private final long[] timestamps;
+        private final double[] fees;
+
+        // Timestamp and position of every order, grouped by station, and the start of the group of every station
+        private final long[] keys;
+        private final int[] stationStarts;
+
+        private int size;
+
+        // Order id or line number of the last line that was not added
+        private String rejectedId;
+
+        Chunk(int capacity, int stationCount) {
+            orderIds = new String[capacity];
+            stations = new int[capacity];
+            cities = new int[capacity];
+            vehicles = new int[capacity];
+            timestamps = new long[capacity];
+            fees = new double[capacity];
+            keys = new long[capacity];
+            stationStarts = new int[stationCount + 1];
+        }
+
+        void clear() {
+            Arrays.fill(orderIds, 0, size, null);
+            size = 0;
+        }
+
+        // Adds the order of a line, returns the error it is answered with instead if it is invalid or its city unknown
+        String add(String line, long lineNumber, FeeTable feeTable, ToIntFunction<String> stationIndex) {
+            int first = line.indexOf(',');
+            int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+            int third = second < 0 ? -1 : line.indexOf(',', second + 1);
+            rejectedId = first <= 0 ? "line " + lineNumber : line.substring(0, first).trim();
+            if (third < 0 || line.indexOf(',', third + 1) >= 0) return INVALID_RECORD;
+
+            long timestamp;
+            try {
+                timestamp = Long.parseLong(line.substring(third + 1).trim());
+            } catch (NumberFormatException e) {
+                return INVALID_RECORD;
+            }
+            if (timestamp < 0 || timestamp > MAX_TIMESTAMP) return INVALID_RECORD;
+
+            String city = line.substring(first + 1, second);
+            int station = stationIndex.applyAsInt(city);
+            if (station == UNKNOWN_STATION) return FeeQuote.CITY_NOT_FOUND;
+
+            orderIds[size] = rejectedId;
+            stations[size] = station;
+            cities[size] = feeTable.cityCode(city);
+            vehicles[size] = feeTable.vehicleCode(line.substring(second + 1, third));
+            timestamps[size] = timestamp;
+            size++;
+            return null;
+        }
+
+        // Groups the orders by station, and sorts every group by timestamp
+        void sort() {
+            Arrays.fill(stationStarts, 0);
+            for (int i = 0; i < size; i++) stationStarts[stations[i] + 1]++;
+            for (int station = 1; station < stationStarts.length; station++) stationStarts[station] += stationStarts[station - 1];
+
+            int[] next = Arrays.copyOf(stationStarts, stationStarts.length - 1);
+            for (int i = 0; i < size; i++) keys[next[stations[i]]++] = timestamps[i] << POSITION_BITS | i;
+            for (int station = 0; station < stationStarts.length - 1; station++) {
+                Arrays.parallelSort(keys, stationStarts[station], stationStarts[station + 1]);
+            }
+        }
+
+        // Writes the quotes in the order of the keys, returns the amount of errors
+        long write(Writer writer) throws IOException {
+            long errors = 0;
+            for (int k = 0; k < size; k++) {
+                int i = (int) (keys[k] & POSITION_MASK);
+                double fee = fees[i];
+                if (Double.isNaN(fee)) {
+                    errors++;
+                    writeError(writer, orderIds[i], FeeQuote.WEATHER_NOT_AVAILABLE);
+                } else if (fee == FeeTable.FORBIDDEN) {
+                    errors++;
+                    writeError(writer, orderIds[i], FeeQuote.VEHICLE_FORBIDDEN);
+                } else {
+                    writer.write(orderIds[i]);
+                    writer.write(',');
+                    writer.write(Double.toString(fee));
+                    writer.write(",\n");
+                }
+            }
+            return errors;
+        }
+    }
+}
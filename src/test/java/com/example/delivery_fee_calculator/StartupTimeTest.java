@@ -0,0 +1,132 @@
+package com.example.delivery_fee_calculator;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the time from launching the startup build until it serves its first fee quote.
+ *
+ * <p>
+ *     Run by {@code ./gradlew startupTest}, which builds the ahead-of-time processed jar and its AppCDS archive, and
+ *     passes their directory, the jar, the budget in seconds and the reports directory as {@code startup.*} system
+ *     properties. The schema is created and a weather record stored by a regular start beforehand, as the startup
+ *     profile only validates the schema. The measured start runs in a JVM of its own, so nothing is loaded or
+ *     compiled already. The time is written to {@code time-to-first-quote.txt} in the reports directory.
+ * </p>
+ */
+@Tag("startup")
+class StartupTimeTest {
+
+    // Upper bound of waiting for a start, so a slow one is still measured and reported
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    @Test
+    void testTimeToFirstQuote(@TempDir Path directory) throws Exception {
+        String startupDirectory = System.getProperty("startup.directory");
+        String startupJar = System.getProperty("startup.jar");
+        assumeTrue(startupDirectory != null && startupJar != null, "Startup build not given, run with ./gradlew startupTest");
+        Duration budget = Duration.ofSeconds(Long.parseLong(System.getProperty("startup.budget", "20")));
+
+        Path databaseFile = directory.resolve("weatherdb");
+        prepareDatabase(databaseFile);
+
+        int port = freePort();
+        Path log = directory.resolve("startup.log");
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/delivery/fee?city=Tallinn&vehicle=Car")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-XX:SharedArchiveFile=application.jsa",
+                "-Dspring.aot.enabled=true",
+                "-jar", startupJar,
+                "--spring.profiles.active=startup",
+                "--delivery.database.file=" + databaseFile.toAbsolutePath(),
+                "--server.port=" + port,
+                "--weather.import.cron=-"))
+                .directory(Path.of(startupDirectory).toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            HttpResponse<String> response = null;
+            Instant deadline = Instant.now().plus(TIMEOUT);
+            while (response == null) {
+                if (!process.isAlive() || Instant.now().isAfter(deadline)) {
+                    fail("No quote was served, log of the start:\n" + Files.readString(log));
+                }
+                try {
+                    response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                } catch (ConnectException e) {
+                    // Not listening yet
+                    Thread.sleep(20);
+                }
+            }
+            Duration timeToFirstQuote = Duration.ofNanos(System.nanoTime() - start);
+            report(timeToFirstQuote, budget);
+
+            assertEquals(200, response.statusCode(), response.body());
+            assertTrue(response.body().contains("\"fee\":4.0"), response.body());
+            assertTrue(timeToFirstQuote.compareTo(budget) <= 0,
+                    "First fee quote served after " + timeToFirstQuote.toMillis() + " ms, budget " + budget.toMillis() + " ms");
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    // Creates the schema and stores the weather of Tallinn, the way a regular start of the application would
+    private static void prepareDatabase(Path databaseFile) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DeliveryFeeCalculatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=default",
+                        "--delivery.database.file=" + databaseFile.toAbsolutePath(),
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--weather.import.cron=-")) {
+            context.getBean(WeatherService.class).saveWeather(Weather.builder()
+                    .name("Tallinn-Harku").wmo("26038").temp(10.0).wind(1.0).phenomenon("Clear")
+                    .timestamp(Instant.now().getEpochSecond()).build());
+        }
+    }
+
+    // Writes the time to the reports directory, so it can be compared between builds
+    private static void report(Duration timeToFirstQuote, Duration budget) throws IOException {
+        Path reports = Files.createDirectories(Path.of(System.getProperty("startup.reports", "build/reports/startup")));
+        Files.writeString(reports.resolve("time-to-first-quote.txt"), String.format("Time to first fee quote %d ms (budget %d ms)%n",
+                timeToFirstQuote.toMillis(), budget.toMillis()), StandardCharsets.UTF_8);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
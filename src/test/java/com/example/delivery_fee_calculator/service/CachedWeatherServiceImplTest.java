@@ -0,0 +1,111 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Integration tests for CachedWeatherServiceImpl.
+ *
+ * <p>
+ *     Validates that the latest weather snapshot follows saved records and can be warmed up from the database.
+ * </p>
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class CachedWeatherServiceImplTest {
+
+    @Autowired
+    CachedWeatherServiceImpl weatherService;
+
+    @Autowired
+    WeatherRepository weatherRepository;
+
+    @Autowired
+    WeatherServiceImpl weatherServiceImpl;
+
+    @BeforeEach
+    void setUp() {
+        // Clean up database and snapshot before each use
+        weatherRepository.deleteAll();
+        weatherService.refresh();
+    }
+
+    // Tests that the newest saved record of a station is served as latest, older ones do not replace it
+    @Test
+    public void testLatestFollowsSavedWeather() {
+        Assertions.assertNull(weatherService.fetchLatestWeatherByStation("Test"));
+
+        weatherService.saveWeather(createWeather("Test", 200L));
+        weatherService.saveWeather(createWeather("Test", 100L));
+        weatherService.saveWeather(createWeather("Test2", 50L));
+
+        Assertions.assertEquals(200L, weatherService.fetchLatestWeatherByStation("Test").getTimestamp());
+        Assertions.assertEquals(50L, weatherService.fetchLatestWeatherByStation("Test2").getTimestamp());
+
+        weatherService.saveWeather(createWeather("Test", 300L));
+        Assertions.assertEquals(300L, weatherService.fetchLatestWeatherByStation("Test").getTimestamp());
+    }
+
+    // Tests that refreshing loads the newest record of every station straight from the database
+    @Test
+    public void testRefreshWarmsUpFromDatabase() {
+        // Saved past the cache, so only the database knows about these records
+        weatherRepository.save(createWeather("Test", 100L));
+        weatherRepository.save(createWeather("Test", 300L));
+        weatherRepository.save(createWeather("Test2", 200L));
+        Assertions.assertNull(weatherService.fetchLatestWeatherByStation("Test"));
+
+        weatherService.refresh();
+
+        Assertions.assertEquals(300L, weatherService.fetchLatestWeatherByStation("Test").getTimestamp());
+        Assertions.assertEquals(200L, weatherService.fetchLatestWeatherByStation("Test2").getTimestamp());
+    }
+
+    // Tests that a record published while refreshing reads the database is kept in the refreshed snapshot
+    @Test
+    public void testRefreshKeepsWeatherPublishedDuringRead() {
+        weatherRepository.save(createWeather("Test", 100L));
+        weatherRepository.save(createWeather("Test2", 100L));
+
+        // Repository that saves a newer record through the service once the latest records have been read
+        CachedWeatherServiceImpl[] service = new CachedWeatherServiceImpl[1];
+        WeatherRepository repository = (WeatherRepository) Proxy.newProxyInstance(WeatherRepository.class.getClassLoader(),
+                new Class<?>[]{WeatherRepository.class}, (proxy, method, args) -> {
+                    try {
+                        Object result = method.invoke(weatherRepository, args);
+                        if (method.getName().equals("findLatestOfEachStation") && service[0] != null) {
+                            service[0].saveWeather(createWeather("Test", 200L));
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        List<WeatherSnapshotChangedEvent> events = new ArrayList<>();
+        service[0] = new CachedWeatherServiceImpl(weatherServiceImpl, repository,
+                event -> events.add((WeatherSnapshotChangedEvent) event));
+
+        service[0].refresh();
+
+        Assertions.assertEquals(200L, service[0].fetchLatestWeatherByStation("Test").getTimestamp());
+        Assertions.assertEquals(100L, service[0].fetchLatestWeatherByStation("Test2").getTimestamp());
+        Assertions.assertEquals(service[0].fetchLatestWeatherByStation("Test"),
+                events.getLast().latestByStation().get("Test"));
+    }
+
+    // Creates a Weather entity with given station name and timestamp
+    private static Weather createWeather(String name, Long timestamp) {
+        return Weather.builder().name(name).wmo("Test").temp(0.0).wind(0.0).phenomenon("Clear").timestamp(timestamp).build();
+    }
+}
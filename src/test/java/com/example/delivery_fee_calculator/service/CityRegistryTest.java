@@ -0,0 +1,65 @@
+package com.example.delivery_fee_calculator.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test cases for the city registry, bound from application.properties.
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class CityRegistryTest {
+
+    @Autowired
+    CityRegistry cityRegistry;
+
+    // Tests that the configured cities are bound, with their non-ASCII names intact
+    @Test
+    public void testConfiguredCities() {
+        assertEquals(Set.of("tallinn", "tartu", "pärnu"), cityRegistry.cities());
+        assertEquals(Set.of("Tallinn-Harku", "Tartu-Tõravere", "Pärnu"), cityRegistry.stations());
+        assertEquals("Tartu-Tõravere", cityRegistry.station("tartu"));
+        assertEquals("Pärnu", cityRegistry.station("pärnu"));
+        assertNull(cityRegistry.station("narva"));
+    }
+
+    // Tests that city names are matched case-insensitively and cities may share a station
+    @Test
+    public void testSharedStation() {
+        CityRegistry registry = new CityRegistry(List.of(
+                new CityRegistry.City(" Tallinn ", "Tallinn-Harku"),
+                new CityRegistry.City("Maardu", "Tallinn-Harku")));
+
+        assertEquals("Tallinn-Harku", registry.station("tallinn"));
+        assertEquals("Tallinn-Harku", registry.station("maardu"));
+        assertEquals(Set.of("Tallinn-Harku"), registry.stations());
+    }
+
+    // Tests that raw city names are matched ignoring case and surrounding whitespace, also straight from a buffer
+    @Test
+    public void testRawCityNamesMatched() {
+        assertEquals("Pärnu", cityRegistry.station(" PÄRNU\t"));
+        assertNull(cityRegistry.station("tar tu"));
+
+        char[] buffer = "{\"city\": \" Tartu \"}".toCharArray();
+        assertEquals("tartu", cityRegistry.city(buffer, 10, 7));
+        assertNull(cityRegistry.city(buffer, 10, 5));
+    }
+
+    // Tests that a city given twice, or without a station, is rejected
+    @Test
+    public void testInvalidCitiesRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CityRegistry(List.of(
+                new CityRegistry.City("Tartu", "Tartu-Tõravere"),
+                new CityRegistry.City("TARTU", "Tartu-Tõravere"))));
+        assertThrows(IllegalArgumentException.class, () -> new CityRegistry(List.of(
+                new CityRegistry.City("Tartu", null))));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+/**
+ * Tests that the high-read profile configures the connection pool and still serves weather lookups.
+ */
+@SpringBootTest
+@ActiveProfiles({"high-read", "test"}) // High-read settings, on the test DB
+public class HighReadProfileTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    WeatherService weatherService;
+
+    @Autowired
+    WeatherRepository weatherRepository;
+
+    // Test that the pool has a fixed size
+    @Test
+    public void testConnectionPool() {
+        HikariDataSource hikari = Assertions.assertInstanceOf(HikariDataSource.class, dataSource);
+        Assertions.assertEquals("high-read", hikari.getPoolName());
+        Assertions.assertEquals(32, hikari.getMaximumPoolSize());
+        Assertions.assertEquals(32, hikari.getMinimumIdle());
+        Assertions.assertEquals(5000, hikari.getConnectionTimeout());
+    }
+
+    // Test that lookups read stored records in their read-only transactions
+    @Test
+    public void testLookups() {
+        weatherRepository.deleteAll();
+        for (long timestamp = 1000; timestamp <= 3000; timestamp += 1000) {
+            weatherService.saveWeather(Weather.builder().name("Test").wmo("0").temp(1.0).wind(1.0).phenomenon("Light rain").timestamp(timestamp).build());
+        }
+
+        Assertions.assertEquals(2000L, weatherService.fetchWeatherByStationAtTime("Test", 2500L).getTimestamp());
+        Assertions.assertEquals(3000L, weatherService.fetchLatestWeatherByStation("Test").getTimestamp());
+        Assertions.assertEquals(1000L, weatherService.fetchWeatherByStationAndTimestamp("Test", 1000L).getTimestamp());
+        Assertions.assertEquals(3, weatherService.fetchWeatherByStation("Test").size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the observations feed of the weather portal, serving {@code /observations.xml} from the test
+ * resources, so imports can be tested without network access.
+ *
+ * <p>
+ *     One server is started lazily and shared by all tests. It serves the feed on three paths:
+ * </p>
+ * <ul>
+ *     <li>{@link #url()} always answers with the full feed</li>
+ *     <li>{@link #conditionalUrl()} sends an ETag and answers 304 when the request carries the same ETag</li>
+ *     <li>{@link #slowUrl()} waits ten seconds before answering</li>
+ * </ul>
+ */
+public final class ObservationsFeedStub {
+
+    public static final String ETAG = "\"1742135859\"";
+
+    private static final byte[] FEED = readFeed();
+
+    private static final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    private static HttpServer server;
+
+    private ObservationsFeedStub() {
+    }
+
+    /**
+     * @return Returns URL of the feed that is always served in full
+     */
+    public static String url() {
+        return baseUrl() + "/observations.xml";
+    }
+
+    /**
+     * @return Returns URL of the feed that supports conditional requests with ETag
+     */
+    public static URI conditionalUrl() {
+        return URI.create(baseUrl() + "/conditional/observations.xml");
+    }
+
+    /**
+     * @return Returns URL of the feed that answers only after ten seconds
+     */
+    public static URI slowUrl() {
+        return URI.create(baseUrl() + "/slow/observations.xml");
+    }
+
+    /**
+     * @return Returns amount of 304 Not Modified responses sent so far
+     */
+    public static int notModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    // Starts the server on a free port on first use
+    private static synchronized String baseUrl() {
+        if (server == null) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/observations.xml", exchange -> send(exchange, 200, FEED));
+            server.createContext("/conditional/observations.xml", exchange -> {
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    send(exchange, 304, null);
+                } else {
+                    send(exchange, 200, FEED);
+                }
+            });
+            server.createContext("/slow/observations.xml", exchange -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                send(exchange, 200, FEED);
+            });
+            server.start();
+        }
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    // Sends a response with the given status and body, no body if null
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (body != null) out.write(body);
+        }
+    }
+
+    private static byte[] readFeed() {
+        try (InputStream in = ObservationsFeedStub.class.getResourceAsStream("/observations.xml")) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
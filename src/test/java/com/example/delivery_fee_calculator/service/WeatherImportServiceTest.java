@@ -1,15 +1,24 @@
 package com.example.delivery_fee_calculator.service;
 
+import com.example.delivery_fee_calculator.entity.Weather;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.example.delivery_fee_calculator.repository.WeatherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
-import org.w3c.dom.Element;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,16 +32,23 @@ public class WeatherImportServiceTest {
     @Autowired
     WeatherService weatherService;
 
+    @Autowired
+    CachedWeatherServiceImpl cachedWeatherService;
+
     @Autowired
     WeatherRepository weatherRepository;
 
+    @Autowired
+    CityRegistry cityRegistry;
+
     WeatherImportService weatherImportService;
 
     @BeforeEach
     public void init() {
         // Clean the database and initialize the import service before each test
         weatherRepository.deleteAll();
-        weatherImportService = new WeatherImportService(weatherService);
+        cachedWeatherService.refresh();
+        weatherImportService = createImportService(URI.create(ObservationsFeedStub.url()), Duration.ofSeconds(5));
     }
 
     /**
@@ -40,7 +56,7 @@ public class WeatherImportServiceTest {
      * Ensures the weather XML is parsed correctly and data fields are extracted.
      */
     @Test
-    public void testXMLParse() {
+    public void testXMLParse() throws Exception {
         String testXML = """
                 <observations timestamp="1742135859">
                 <station>
@@ -68,27 +84,77 @@ public class WeatherImportServiceTest {
 
 
 
-        // Create Root element from the String XML
-        Element root = weatherImportService.parseXML(new ByteArrayInputStream(testXML.getBytes(StandardCharsets.UTF_8)));
+        // Parse the String XML, keeping only the wanted station
+        List<Weather> observations = weatherImportService.parseObservations(
+                new ByteArrayInputStream(testXML.getBytes(StandardCharsets.UTF_8)), Set.of("Tallinn-Harku"));
+        assertEquals(1, observations.size());
+        Weather weather = observations.get(0);
 
-        // Extract information
-        Long timestamp = Long.valueOf(root.getAttribute("timestamp"));
-        Element station = (Element) root.getElementsByTagName("station").item(0);
+        // Asses if the parsed information from XML is correct
+        assertEquals("Tallinn-Harku", weather.getName());
+        assertEquals("26038", weather.getWmo());
+        assertEquals(1.1, weather.getTemp());
+        assertEquals(2.0, weather.getWind());
+        assertEquals("Clear", weather.getPhenomenon());
+        assertEquals(1742135859L, weather.getTimestamp());
+    }
 
-        String stationName = station.getElementsByTagName("name").item(0).getTextContent().trim();
-        String wmo = station.getElementsByTagName("wmocode").item(0).getTextContent().trim();
-        Double airtemperature = Double.valueOf(station.getElementsByTagName("airtemperature").item(0).getTextContent().trim());
-        Double windspeed = Double.valueOf(station.getElementsByTagName("windspeed").item(0).getTextContent().trim());
-        String phenomenon = station.getElementsByTagName("phenomenon").item(0).getTextContent().trim();
+    /**
+     * Unit test for validating that only wanted stations are parsed from a full observations payload,
+     * and stations without measurements are left out.
+     */
+    @Test
+    public void testXMLParseFiltersStations() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            List<Weather> observations = weatherImportService.parseObservations(in, Set.of("Tallinn-Harku", "Pärnu", "Aegviidu", "Unknown"));
+
+            // Aegviidu has no air temperature or wind speed, Unknown is not in the payload
+            assertEquals(List.of("Tallinn-Harku", "Pärnu"), observations.stream().map(Weather::getName).toList());
+            assertEquals("Light rain", observations.get(1).getPhenomenon());
+            assertEquals(11.2, observations.get(1).getWind());
+        }
+    }
 
+    /**
+     * Integration test for importing the same observations snapshot twice.
+     * Validates that the second import stores nothing.
+     */
+    @Test
+    public void testImportIsIdempotent() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            assertEquals(3, weatherImportService.importObservations(in).size());
+        }
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            assertEquals(0, weatherImportService.importObservations(in).size());
+        }
+
+        // Every station is stored only once
+        assertEquals(3, weatherRepository.count());
+    }
 
-        // Asses if the parsed information from XML is correct
-        assertEquals("Tallinn-Harku", stationName);
-        assertEquals("26038", wmo);
-        assertEquals(1.1, airtemperature);
-        assertEquals(2.0, windspeed);
-        assertEquals("Clear", phenomenon);
-        assertEquals(1742135859L,timestamp);
+    /**
+     * Integration test for backfilling from a directory of archived observations files.
+     * Validates that repeated snapshots and unreadable files are skipped.
+     */
+    @Test
+    public void testImportArchive(@TempDir Path archive) throws Exception {
+        String observations;
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            observations = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Two snapshots, the first one archived twice, and a broken file
+        Files.writeString(archive.resolve("1.xml"), observations);
+        Files.writeString(archive.resolve("2.xml"), observations);
+        Files.writeString(archive.resolve("3.xml"), observations.replace("timestamp=\"1742135859\"", "timestamp=\"1742139459\""));
+        Files.writeString(archive.resolve("4.xml"), "<observations");
+
+        assertEquals(6, weatherImportService.importArchive(archive));
+        assertEquals(6, weatherRepository.count());
+        assertEquals(2, weatherRepository.findByNameOrderByTimestampDesc("Pärnu").size());
+
+        // Importing the same archive again stores nothing
+        assertEquals(0, weatherImportService.importArchive(archive));
     }
 
     /**
@@ -108,4 +174,64 @@ public class WeatherImportServiceTest {
         assertEquals(1, weatherRepository.findByNameOrderByTimestampDesc("Pärnu").size());
         assertEquals(1, weatherRepository.findByNameOrderByTimestampDesc("Tartu-Tõravere").size());
     }
+
+    /**
+     * Integration test for importing with a city registry holding an additional city.
+     * Validates that the station of a configured city is imported without any code changes.
+     */
+    @Test
+    public void testImportConfiguredStations() throws Exception {
+        CityRegistry narvaRegistry = new CityRegistry(List.of(
+                new CityRegistry.City("Tallinn", "Tallinn-Harku"),
+                new CityRegistry.City("Narva", "Narva")));
+        WeatherImportService narvaImportService = new WeatherImportService(weatherService, narvaRegistry,
+                new SimpleMeterRegistry(), URI.create(ObservationsFeedStub.url()), Duration.ofSeconds(5), Duration.ofSeconds(5));
+
+        try (InputStream in = getClass().getResourceAsStream("/observations.xml")) {
+            assertEquals(List.of("Tallinn-Harku", "Narva"),
+                    narvaImportService.importObservations(in).stream().map(Weather::getName).toList());
+        }
+        assertTrue(weatherRepository.findByNameOrderByTimestampDesc("Pärnu").isEmpty());
+    }
+
+    /**
+     * Integration test for importing from a feed that supports conditional requests.
+     * Validates that an unchanged feed is not downloaded again.
+     */
+    @Test
+    public void testConditionalImport() {
+        WeatherImportService conditionalImportService = createImportService(ObservationsFeedStub.conditionalUrl(), Duration.ofSeconds(5));
+        int notModifiedResponses = ObservationsFeedStub.notModifiedResponses();
+
+        conditionalImportService.scheduledTrigger();
+        assertEquals(3, weatherRepository.count());
+        assertEquals(notModifiedResponses, ObservationsFeedStub.notModifiedResponses());
+
+        // Second request carries the ETag of the first response and is answered with 304
+        conditionalImportService.scheduledTrigger();
+        assertEquals(3, weatherRepository.count());
+        assertEquals(notModifiedResponses + 1, ObservationsFeedStub.notModifiedResponses());
+    }
+
+    /**
+     * Integration test for importing from a feed that does not answer in time.
+     * Validates that the import gives up after the read timeout instead of blocking the scheduler thread.
+     */
+    @Test
+    public void testSlowFeedTimesOut() {
+        WeatherImportService slowImportService = createImportService(ObservationsFeedStub.slowUrl(), Duration.ofMillis(500));
+
+        long start = System.nanoTime();
+        slowImportService.scheduledTrigger();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Feed answers only after ten seconds
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(5)) < 0, "Import blocked for " + elapsed);
+        assertEquals(0, weatherRepository.count());
+    }
+
+    // Creates an import service reading the given feed URL
+    private WeatherImportService createImportService(URI feedUrl, Duration readTimeout) {
+        return new WeatherImportService(weatherService, cityRegistry, new SimpleMeterRegistry(), feedUrl, Duration.ofSeconds(5), readTimeout);
+    }
 }
@@ -0,0 +1,99 @@
+package com.example.delivery_fee_calculator.service;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for WeatherRetentionService.
+ *
+ * <p>
+ *     Validates that old weather records are downsampled and purged, while recent records, the newest record of
+ *     every station and timestamped lookups within the retention window are kept.
+ * </p>
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class WeatherRetentionServiceTest {
+
+    private static final long HOUR = 3600;
+    private static final long DAY = 24 * HOUR;
+
+    // Start of a day, so the daily buckets of the test data are predictable
+    private static final long NOW = 20_000 * DAY;
+
+    @Autowired
+    WeatherRepository weatherRepository;
+
+    @Autowired
+    WeatherServiceImpl weatherService;
+
+    // Full resolution for 30 days, a record per day up to 365 days, small batches to exercise batching
+    WeatherRetentionService retentionService;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository.deleteAll();
+        retentionService = new WeatherRetentionService(weatherRepository, new SimpleMeterRegistry(),
+                Duration.ofDays(30), Duration.ofDays(1), Duration.ofDays(365), 2);
+    }
+
+    // Tests that records beyond the full resolution keep one per day, and records beyond the maximum age are purged
+    @Test
+    public void testDownsampleAndPurge() {
+        long recentDay = NOW - DAY;
+        long oldDay = NOW - 100 * DAY;
+        long expiredDay = NOW - 400 * DAY;
+        for (String station : List.of("Tallinn-Harku", "Pärnu")) {
+            for (long day : List.of(expiredDay, oldDay, recentDay)) {
+                for (long hour = 0; hour < 3; hour++) {
+                    weatherRepository.save(weather(station, day + hour * HOUR + 60));
+                }
+            }
+        }
+
+        // Per station: 3 expired records purged, 2 of the old day downsampled
+        assertEquals(10, retentionService.applyRetention(NOW));
+        assertEquals(List.of(recentDay + 2 * HOUR + 60, recentDay + HOUR + 60, recentDay + 60, oldDay + 60),
+                weatherService.fetchWeatherByStation("Pärnu").stream().map(Weather::getTimestamp).toList());
+
+        // The first record of the old day is in effect for the whole day
+        assertEquals(oldDay + 60, weatherService.fetchWeatherByStationAtTime("Tallinn-Harku", oldDay + 20 * HOUR).getTimestamp());
+        assertEquals(recentDay + HOUR + 60, weatherService.fetchWeatherByStationAtTime("Tallinn-Harku", recentDay + HOUR + 90).getTimestamp());
+
+        // Applying the policy again deletes nothing
+        assertEquals(0, retentionService.applyRetention(NOW));
+    }
+
+    // Tests that the newest record of a station is kept, however old it is
+    @Test
+    public void testNewestRecordKept() {
+        long expiredDay = NOW - 400 * DAY;
+        weatherRepository.save(weather("Tartu-Tõravere", expiredDay));
+        weatherRepository.save(weather("Tartu-Tõravere", expiredDay + HOUR));
+
+        assertEquals(1, retentionService.applyRetention(NOW));
+        assertEquals(expiredDay + HOUR, weatherService.fetchLatestWeatherByStation("Tartu-Tõravere").getTimestamp());
+    }
+
+    // Tests that a full resolution window longer than the maximum age is rejected
+    @Test
+    public void testInvalidPolicyRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new WeatherRetentionService(weatherRepository,
+                new SimpleMeterRegistry(), Duration.ofDays(30), Duration.ofDays(1), Duration.ofDays(7), 100));
+    }
+
+    private static Weather weather(String station, long timestamp) {
+        return Weather.builder().name(station).wmo("").temp(1.0).wind(2.0).phenomenon("Clear").timestamp(timestamp).build();
+    }
+}
@@ -2,13 +2,17 @@ package com.example.delivery_fee_calculator.service;
 
 import com.example.delivery_fee_calculator.entity.Weather;
 import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.example.delivery_fee_calculator.service.fee.PhenomenonClass;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,6 +34,12 @@ public class WeatherServiceImplTest {
     @Autowired
     WeatherRepository weatherRepository;
 
+    @Autowired
+    PhenomenonClassMigration phenomenonClassMigration;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void setUp() {
         // Clean up before each use
@@ -64,6 +74,40 @@ public class WeatherServiceImplTest {
         Assertions.assertEquals(timestamp, weatherResult.getTimestamp());
     }
 
+    // Test saving many records in a single batch
+    @Test
+    public void testWeatherServiceSaveAll() {
+        // Create more records than fit into one insert batch
+        List<Weather> weatherList = new ArrayList<>();
+        for (long timestamp = 1; timestamp <= 120; timestamp++) {
+            weatherList.add(Weather.builder().name("Test" + timestamp % 3).wmo("Test2").temp(0.0).wind(0.0).phenomenon("Test3").timestamp(timestamp).build());
+        }
+
+        weatherService.saveAllWeather(weatherList);
+
+        // Asses if all records were stored with their own ids
+        Assertions.assertEquals(120, weatherRepository.count());
+        Assertions.assertEquals(120, weatherList.stream().map(Weather::getId).distinct().count());
+        Assertions.assertEquals(40, weatherService.fetchWeatherByStation("Test0").size());
+    }
+
+    // Test that saving many records skips the ones already stored and the ones repeated in the list
+    @Test
+    public void testWeatherServiceSaveAllSkipsDuplicates() {
+        weatherService.saveWeather(Weather.builder().name("Test").wmo("Test2").temp(0.0).wind(0.0).phenomenon("Test3").timestamp(100L).build());
+
+        List<Weather> storedList = weatherService.saveAllWeather(List.of(
+                Weather.builder().name("Test").wmo("Test2").temp(1.0).wind(0.0).phenomenon("Test3").timestamp(100L).build(),
+                Weather.builder().name("Test").wmo("Test2").temp(2.0).wind(0.0).phenomenon("Test3").timestamp(200L).build(),
+                Weather.builder().name("Test").wmo("Test2").temp(3.0).wind(0.0).phenomenon("Test3").timestamp(200L).build(),
+                Weather.builder().name("Test1").wmo("Test2").temp(4.0).wind(0.0).phenomenon("Test3").timestamp(100L).build()));
+
+        // Only the first record of "Test" at 200 and the record of "Test1" are new
+        Assertions.assertEquals(List.of(2.0, 4.0), storedList.stream().map(Weather::getTemp).toList());
+        Assertions.assertEquals(3, weatherRepository.count());
+        Assertions.assertEquals(0.0, weatherService.fetchWeatherByStationAndTimestamp("Test", 100L).getTemp());
+    }
+
     // Tests fetching data from database by station name through weather service
     @Test
     public void testFetchWeatherByStation(){
@@ -76,9 +120,10 @@ public class WeatherServiceImplTest {
         Long timestamp = 123456789L;
 
         // Create multiple Weather entities
+        // A station has one record per timestamp
         Weather weather1_1 = Weather.builder().name(name + 1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
-        Weather weather1_2 = Weather.builder().name(name + 1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
-        Weather weather1_3 = Weather.builder().name(name + 1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
+        Weather weather1_2 = Weather.builder().name(name + 1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp + 1).build();
+        Weather weather1_3 = Weather.builder().name(name + 1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp + 2).build();
         Weather weather2 = Weather.builder().name(name + 2).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
         Weather weather3 = Weather.builder().name(name + 3).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
         Weather weather4 = Weather.builder().name(name + 4).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
@@ -115,12 +160,13 @@ public class WeatherServiceImplTest {
         String phenomenon = "Test3";
         Long timestamp = 123455555L;
         Long timestamp2 = 123451111L;
+        Long timestamp3 = 123459999L;
 
         // Create multiple Weather entities
         Weather weather1 = Weather.builder().name(name).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
         Weather weather2 = Weather.builder().name(name).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp2).build();
         Weather weather3 = Weather.builder().name(name+1).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp2).build();
-        Weather weather4 = Weather.builder().name(name).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp).build();
+        Weather weather4 = Weather.builder().name(name).wmo(wmo).temp(temp).wind(wind).phenomenon(phenomenon).timestamp(timestamp3).build();
 
         // Save entities into db
         weatherService.saveWeather(weather1);
@@ -136,4 +182,85 @@ public class WeatherServiceImplTest {
 
         Assertions.assertEquals(123451111L, testRes.getTimestamp());
     }
+
+    /**
+     * Tests fetching the latest data of a station, the data in effect at a timestamp between observations and during a period
+     */
+    @Test
+    public void testFetchLatestWeatherAndWeatherAtTime(){
+        // Create observations of one station, saved out of order
+        for (Long timestamp : List.of(2000L, 1000L, 3000L)) {
+            weatherService.saveWeather(Weather.builder().name("Test").wmo("Test2").temp(0.0).wind(0.0).phenomenon("Test3").timestamp(timestamp).build());
+        }
+
+        // Latest observation of the station
+        Assertions.assertEquals(3000L, weatherService.fetchLatestWeatherByStation("Test").getTimestamp());
+        Assertions.assertNull(weatherService.fetchLatestWeatherByStation("Unknown"));
+
+        // Observation in effect at exact timestamp, between two observations and before the first one
+        Assertions.assertEquals(2000L, weatherService.fetchWeatherByStationAtTime("Test", 2000L).getTimestamp());
+        Assertions.assertEquals(2000L, weatherService.fetchWeatherByStationAtTime("Test", 2999L).getTimestamp());
+        Assertions.assertNull(weatherService.fetchWeatherByStationAtTime("Test", 999L));
+
+        // Observations in effect during a period, the one at its start first, and during one before the first observation
+        Assertions.assertEquals(List.of(1000L, 2000L, 3000L),
+                weatherService.fetchWeatherByStationDuring("Test", 1500L, 3000L).stream().map(Weather::getTimestamp).toList());
+        Assertions.assertEquals(List.of(1000L),
+                weatherService.fetchWeatherByStationDuring("Test", 500L, 1999L).stream().map(Weather::getTimestamp).toList());
+
+        // Bounded query returns only the newest records
+        List<Weather> latestTwo = weatherRepository.findLatestByName("Test", Limit.of(2));
+        Assertions.assertEquals(List.of(3000L, 2000L), latestTwo.stream().map(Weather::getTimestamp).toList());
+    }
+
+    // Test that records stored without a phenomenon class get it stored by the migration
+    @Test
+    public void testPhenomenonClassMigration() {
+        String[] phenomena = {"Clear", "Light shower", "Moderate snowfall", "Thunderstorm", "Light shower"};
+        for (int i = 0; i < phenomena.length; i++) {
+            weatherService.saveWeather(Weather.builder().name("Test").wmo("Test2").temp(0.0).wind(0.0).phenomenon(phenomena[i]).timestamp(1000L + i).build());
+        }
+        // Stored classes are ones the records got on saving
+        Assertions.assertEquals(PhenomenonClass.SNOW_SLEET, weatherRepository.findByNameAndTimestamp("Test", 1002L).getPhenomenonClass());
+
+        // Records stored before the class existed have none
+        jdbcTemplate.update("UPDATE weather SET phenomenon_class = NULL WHERE timestamp >= 1001");
+        Assertions.assertEquals(List.of("Light shower", "Moderate snowfall", "Thunderstorm"),
+                weatherRepository.findUnclassifiedPhenomena().stream().sorted().toList());
+
+        Assertions.assertEquals(4, phenomenonClassMigration.migrate());
+        Assertions.assertTrue(weatherRepository.findUnclassifiedPhenomena().isEmpty());
+        Assertions.assertEquals(0, phenomenonClassMigration.migrate());
+
+        // Classes are stored by ordinal
+        Assertions.assertEquals(List.of(PhenomenonClass.NONE.ordinal(), PhenomenonClass.NONE.ordinal(), PhenomenonClass.SNOW_SLEET.ordinal(),
+                        PhenomenonClass.FORBIDDEN.ordinal(), PhenomenonClass.NONE.ordinal()),
+                jdbcTemplate.queryForList("SELECT phenomenon_class FROM weather ORDER BY timestamp", Integer.class));
+    }
+
+    // Test that the newest record of every station is found once, also when a station has several at its newest timestamp
+    @Test
+    public void testFindLatestOfEachStationWithDuplicates() {
+        for (long timestamp = 1000; timestamp <= 3000; timestamp += 1000) {
+            weatherService.saveWeather(Weather.builder().name("Test1").wmo("1").temp(0.0).wind(0.0).phenomenon("Clear").timestamp(timestamp).build());
+            weatherService.saveWeather(Weather.builder().name("Test2").wmo("2").temp(0.0).wind(0.0).phenomenon("Clear").timestamp(timestamp - 500).build());
+        }
+
+        // Databases created before the unique constraint may hold duplicates, restored afterward for other tests
+        jdbcTemplate.execute("ALTER TABLE weather DROP CONSTRAINT uk_weather_name_timestamp");
+        try {
+            Weather duplicate = Weather.builder().name("Test1").wmo("1").temp(5.0).wind(0.0).phenomenon("Clear").timestamp(3000L).build();
+            weatherService.saveWeather(duplicate);
+
+            List<Weather> latest = weatherRepository.findLatestOfEachStation();
+            Assertions.assertEquals(2, latest.size());
+            Weather test1 = latest.stream().filter(weather -> weather.getName().equals("Test1")).findFirst().orElseThrow();
+            Weather test2 = latest.stream().filter(weather -> weather.getName().equals("Test2")).findFirst().orElseThrow();
+            Assertions.assertEquals(duplicate.getId(), test1.getId());
+            Assertions.assertEquals(2500L, test2.getTimestamp());
+        } finally {
+            weatherRepository.deleteAll();
+            jdbcTemplate.execute("ALTER TABLE weather ADD CONSTRAINT uk_weather_name_timestamp UNIQUE (name, timestamp)");
+        }
+    }
 }
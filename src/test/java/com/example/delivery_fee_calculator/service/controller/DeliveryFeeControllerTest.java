@@ -1,20 +1,45 @@
 package com.example.delivery_fee_calculator.service.controller;
 
 import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.dto.FeeChanges;
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.entity.Weather;
 import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.example.delivery_fee_calculator.service.CachedWeatherServiceImpl;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.ObservationsFeedStub;
 import com.example.delivery_fee_calculator.service.WeatherImportService;
+import com.example.delivery_fee_calculator.service.fee.DeliveryFeeService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.json.JSONException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Integration tests for the DeliveryFeeController REST API.
@@ -23,6 +48,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  * </p>
  */
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false) // Exports metrics to /actuator/prometheus, which tests disable by default
 @ActiveProfiles("test")
 public class DeliveryFeeControllerTest {
 
@@ -30,10 +56,31 @@ public class DeliveryFeeControllerTest {
     @Autowired
     WeatherRepository weatherRepository;
 
+    // Inject latest weather cache to reload it after the DB was cleaned
+    @Autowired
+    CachedWeatherServiceImpl cachedWeatherService;
+
     // Inject service to trigger weather data import
     @Autowired
     WeatherImportService weatherImportService;
 
+    // Inject fee service and city registry to calculate the expected quotes
+    @Autowired
+    DeliveryFeeService deliveryFeeService;
+
+    @Autowired
+    CityRegistry cityRegistry;
+
+    // Inject meter registry to verify recorded metrics
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // Points the weather import at the local feed stub instead of the weather portal
+    @DynamicPropertySource
+    static void feedProperties(DynamicPropertyRegistry registry) {
+        registry.add("weather.import.url", ObservationsFeedStub::url);
+    }
+
     // Injects the random port used by Spring Boot during tests
     @LocalServerPort
     private int port;
@@ -48,6 +95,7 @@ public class DeliveryFeeControllerTest {
     public void setUp() {
         // Clear database before usage
         weatherRepository.deleteAll();
+        cachedWeatherService.refresh();
         // Trigger weather data import to populate necessary weather info
         weatherImportService.scheduledTrigger();
     }
@@ -122,8 +170,9 @@ public class DeliveryFeeControllerTest {
      */
     @Test
     public void testErrorNoData() throws JSONException {
-        // Clear database again to simulate no weather data situation
+        // Clear database and latest weather cache again to simulate no weather data situation
         weatherRepository.deleteAll();
+        cachedWeatherService.refresh();
 
         // Prepare a Delivery payload
         Delivery delivery = new Delivery("Tartu", "car", null);
@@ -208,6 +257,254 @@ public class DeliveryFeeControllerTest {
         JSONAssert.assertEquals(expected, response_NoVehicle.getBody(), true);
     }
 
+    /**
+     * Tests batch REST API response, every delivery gets its own fee or error in the order of the input
+     */
+    @Test
+    public void testBatchDeliveryFees() throws JSONException {
+        // Replace imported weather with known observations
+        weatherRepository.deleteAll();
+        cachedWeatherService.refresh();
+        cachedWeatherService.saveWeather(Weather.builder().name("Tartu-Tõravere").wmo("26242").temp(5.0).wind(5.0).phenomenon("Clear").timestamp(1000L).build());
+        cachedWeatherService.saveWeather(Weather.builder().name("Tallinn-Harku").wmo("26038").temp(5.0).wind(25.0).phenomenon("Clear").timestamp(1000L).build());
+
+        List<Delivery> deliveries = List.of(
+                new Delivery("Tartu", "Car", null),
+                new Delivery("tartu ", "BIKE", 1500L),
+                new Delivery("Tallinn", "Bike", null),
+                new Delivery("Narva", "Car", null),
+                new Delivery("Pärnu", "Car", null),
+                new Delivery("Tartu", "Car", 0L));
+
+        ResponseEntity<String> response = restTemplate.exchange(
+                createURLWithPort("/delivery/fees"),
+                HttpMethod.POST, new HttpEntity<>(deliveries, headers), String.class);
+
+        // Expected JSON output
+        String expected = """
+                [
+                  {"fee" : 3.5},
+                  {"fee" : 2.5},
+                  {"error" : "Usage of selected vehicle type is forbidden"},
+                  {"error" : "City not found"},
+                  {"error" : "Weather data not available"},
+                  {"error" : "Weather data not available"}
+                ]""";
+
+        // Assert HTTP 200 OK status and JSON response match
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals(expected, response.getBody(), true);
+    }
+
+    /**
+     * Tests that quotes based on the latest weather carry cache headers of the weather snapshot,
+     * a repeated request with the ETag is answered with 304, and a newer snapshot changes the quote and its ETag
+     */
+    @Test
+    public void testLatestQuoteCaching() throws JSONException {
+        String url = createURLWithPort("/delivery/fee?city=Tartu&vehicle=Car");
+
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals("{\"fee\" : 3.5}", response.getBody(), true);
+        String eTag = response.getHeaders().getETag();
+        assertEquals("max-age=60, public", response.getHeaders().getCacheControl());
+
+        // Repeated request with the ETag, nothing has changed
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<String> notModified = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(conditionalHeaders), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+
+        // Newer snapshot with a colder temperature adds an extra fee only for scooters and bikes, Tartu car stays 3.5
+        cachedWeatherService.saveWeather(Weather.builder().name("Tartu-Tõravere").wmo("26242").temp(-15.0).wind(5.0).phenomenon("Clear").timestamp(9999999999L).build());
+        ResponseEntity<String> changed = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(conditionalHeaders), String.class);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(eTag, changed.getHeaders().getETag());
+
+        ResponseEntity<String> bike = restTemplate.getForEntity(createURLWithPort("/delivery/fee?city=Tartu&vehicle=Bike"), String.class);
+        JSONAssert.assertEquals("{\"fee\" : 3.5}", bike.getBody(), true);
+
+        // Quotes for a timestamp are not cached
+        ResponseEntity<String> timestamped = restTemplate.getForEntity(url + "&timestamp=9999999999", String.class);
+        assertEquals(HttpStatus.OK, timestamped.getStatusCode());
+        assertNull(timestamped.getHeaders().getETag());
+    }
+
+    /**
+     * Tests that POST quotes carry no cache headers and are answered in full even with a matching If-None-Match
+     */
+    @Test
+    public void testPostQuoteNotCached() throws JSONException {
+        String eTag = restTemplate.getForEntity(createURLWithPort("/delivery/fee?city=Tartu&vehicle=Car"), String.class)
+                .getHeaders().getETag();
+
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setContentType(MediaType.APPLICATION_JSON);
+        conditionalHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/delivery/fee"), HttpMethod.POST,
+                new HttpEntity<>(new Delivery("Tartu", "Car", null), conditionalHeaders), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals("{\"fee\" : 3.5}", response.getBody(), true);
+        assertNull(response.getHeaders().getETag());
+        assertNull(response.getHeaders().getCacheControl());
+    }
+
+    /**
+     * Tests that quotes are timed by city, vehicle and outcome, and that the metrics are exposed for Prometheus
+     */
+    @Test
+    public void testQuoteMetrics() {
+        long okQuotes = meterRegistry.timer("delivery.fee.quote", "city", "tartu", "vehicle", "car", "outcome", "ok").count();
+        long unknownCityQuotes = meterRegistry.timer("delivery.fee.quote", "city", "unknown", "vehicle", "car", "outcome", "unknown-city").count();
+
+        sendRequest(new Delivery("Tartu", "Car", null));
+        sendRequest(new Delivery("Narva", "car", null));
+
+        assertEquals(okQuotes + 1, meterRegistry.timer("delivery.fee.quote", "city", "tartu", "vehicle", "car", "outcome", "ok").count());
+        assertEquals(unknownCityQuotes + 1, meterRegistry.timer("delivery.fee.quote", "city", "unknown", "vehicle", "car", "outcome", "unknown-city").count());
+
+        ResponseEntity<String> response = restTemplate.getForEntity(createURLWithPort("/actuator/prometheus"), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("delivery_fee_quote_seconds_count{city=\"tartu\",outcome=\"ok\",vehicle=\"car\"}"));
+        assertTrue(response.getBody().contains("weather_import_seconds_count{phase=\"persist\"}"));
+        assertTrue(response.getBody().contains("weather_staleness_seconds{station=\"Tartu-Tõravere\"}"));
+        assertTrue(response.getBody().contains("spring_data_repository_invocations_seconds_count"));
+    }
+
+    /**
+     * Tests that a stream of newline-delimited deliveries is answered line by line, in order,
+     * with an error line for a line that is not a valid delivery
+     */
+    @Test
+    public void testDeliveryFeeStream() throws JSONException {
+        String body = """
+                {"city": "Tartu", "vehicle": "Car"}
+                {"city": "Narva", "vehicle": "Car"}
+                {"city": "Tartu"
+
+                {"city": "Tallinn", "vehicle": "Bike"}
+                """;
+        HttpHeaders ndjsonHeaders = new HttpHeaders();
+        ndjsonHeaders.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+        ResponseEntity<String> response = restTemplate.exchange(createURLWithPort("/delivery/fee/stream"),
+                HttpMethod.POST, new HttpEntity<>(body, ndjsonHeaders), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        String[] lines = response.getBody().split("\n");
+        assertEquals(4, lines.length);
+        JSONAssert.assertEquals("{\"fee\" : 3.5}", lines[0], true);
+        JSONAssert.assertEquals("{\"error\" : \"City not found\"}", lines[1], true);
+        JSONAssert.assertEquals("{\"error\" : \"Invalid request body: please provide a valid JSON\"}", lines[2], true);
+        JSONAssert.assertEquals("{\"fee\" : 3.0}", lines[3], true);
+    }
+
+    /**
+     * Tests that a fee update subscription gets the current fees first, and afterwards only the fees changed by
+     * newer weather
+     */
+    @Test
+    public void testDeliveryFeeUpdates() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(
+                createURLWithPort("/delivery/fee/updates?city=Tallinn&vehicle=Car&city=Tallinn&vehicle=Bike"))).build();
+        HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> events = lines.filter(line -> line.startsWith("data:")).map(line -> line.substring(5)).iterator();
+            JSONAssert.assertEquals("{\"city\" : \"Tallinn\", \"vehicle\" : \"Car\", \"fee\" : 4.0}", nextEvent(events), true);
+            JSONAssert.assertEquals("{\"city\" : \"Tallinn\", \"vehicle\" : \"Bike\", \"fee\" : 3.0}", nextEvent(events), true);
+
+            // Stronger wind adds an extra fee only for bikes
+            cachedWeatherService.saveWeather(Weather.builder().name("Tallinn-Harku").wmo("26038").temp(1.1).wind(15.0).phenomenon("Clear").timestamp(9999999999L).build());
+            JSONAssert.assertEquals("{\"city\" : \"Tallinn\", \"vehicle\" : \"Bike\", \"fee\" : 3.5}", nextEvent(events), true);
+        }
+    }
+
+    /**
+     * Tests that the changes endpoint returns the whole fee matrix first, and afterwards only the changed fees
+     */
+    @Test
+    public void testDeliveryFeeChanges() throws JSONException {
+        ResponseEntity<FeeChanges> full = restTemplate.getForEntity(createURLWithPort("/delivery/fee/changes"), FeeChanges.class);
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+        assertTrue(full.getBody().full());
+        assertEquals(9, full.getBody().changes().size());
+
+        // Stronger wind adds an extra fee only for bikes
+        cachedWeatherService.saveWeather(Weather.builder().name("Tallinn-Harku").wmo("26038").temp(1.1).wind(15.0).phenomenon("Clear").timestamp(9999999999L).build());
+
+        ResponseEntity<String> changes = restTemplate.getForEntity(
+                createURLWithPort("/delivery/fee/changes?since=" + full.getBody().version()), String.class);
+        String expected = "{\"version\" : " + (full.getBody().version() + 1) + ", \"full\" : false, "
+                + "\"changes\" : [{\"city\" : \"tallinn\", \"vehicle\" : \"bike\", \"fee\" : 3.5}]}";
+        JSONAssert.assertEquals(expected, changes.getBody(), true);
+    }
+
+    /**
+     * Differential test of quotes based on the latest weather: the quotes served from the fee matrix match the ones
+     * calculated from the newest stored weather, for random weather of every station, with known and unknown
+     * cities and vehicle types in any case
+     */
+    @Test
+    public void testLatestQuotesMatchCalculation() {
+        String[] phenomena = {"Clear", "Light rain", "Moderate snow shower", "Light sleet", "Glaze", "Hail", "Thunderstorm", "Mist"};
+        String[] cities = {"Tallinn", "tartu", " PÄRNU ", "Narva"};
+        String[] vehicles = {"Car", "scooter", "BIKE", "Truck"};
+        Random random = new Random(42);
+
+        for (int round = 1; round <= 20; round++) {
+            for (String station : cityRegistry.stations()) {
+                cachedWeatherService.saveWeather(Weather.builder().name(station).wmo("0")
+                        .temp(Math.round(random.nextDouble() * 250 - 200) / 10.0)
+                        .wind(Math.round(random.nextDouble() * 250) / 10.0)
+                        .phenomenon(phenomena[random.nextInt(phenomena.length)])
+                        .timestamp(9000000000L + round).build());
+            }
+
+            for (String city : cities) {
+                for (String vehicle : vehicles) {
+                    ResponseEntity<FeeQuote> response = restTemplate.exchange(createURLWithPort("/delivery/fee"),
+                            HttpMethod.POST, new HttpEntity<>(new Delivery(city, vehicle, null), headers), FeeQuote.class);
+                    FeeQuote expected = calculatedQuote(city, vehicle);
+                    assertEquals(expected, response.getBody(), "Round " + round + ": " + city + ", " + vehicle);
+                    assertEquals(expected.error() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST, response.getStatusCode());
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the quote based on the newest weather stored in the database, as quotes were before the fee matrix
+     *
+     * @param city city name
+     * @param vehicle vehicle type
+     * @return Returns the calculated fee or the error
+     */
+    private FeeQuote calculatedQuote(String city, String vehicle) {
+        String station = cityRegistry.station(city);
+        if (station == null) return FeeQuote.ofError(FeeQuote.CITY_NOT_FOUND);
+        List<Weather> weather = weatherRepository.findByNameOrderByTimestampDesc(station);
+        if (weather.isEmpty()) return FeeQuote.ofError(FeeQuote.WEATHER_NOT_AVAILABLE);
+        Double fee = deliveryFeeService.deliveryFeeCalculator(city, vehicle,
+                weather.get(0).getTemp(), weather.get(0).getWind(), weather.get(0).getPhenomenon());
+        return fee == null ? FeeQuote.ofError(FeeQuote.VEHICLE_FORBIDDEN) : FeeQuote.ofFee(fee);
+    }
+
+    /**
+     * Waits for the next event of a subscription
+     *
+     * @param events data of the received events
+     * @return Returns the data of the next event
+     */
+    private static String nextEvent(Iterator<String> events) throws Exception {
+        return CompletableFuture.supplyAsync(events::next).get(5, TimeUnit.SECONDS);
+    }
+
     /**
      * Creates URL with dynamically assigned port and given URI
      *
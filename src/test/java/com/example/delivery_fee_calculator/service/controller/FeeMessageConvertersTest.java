@@ -0,0 +1,100 @@
+package com.example.delivery_fee_calculator.service.controller;
+
+import com.example.delivery_fee_calculator.controller.DeliveryMessageConverter;
+import com.example.delivery_fee_calculator.controller.FeeQuoteMessageConverter;
+import com.example.delivery_fee_calculator.dto.Delivery;
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test cases for the message converters of the single delivery fee quote, which must read and write the same JSON
+ * as Jackson databind does.
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class FeeMessageConvertersTest {
+
+    @Autowired
+    DeliveryMessageConverter deliveryMessageConverter;
+
+    @Autowired
+    FeeQuoteMessageConverter feeQuoteMessageConverter;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // Tests that known cities and vehicle types are normalized once, and unknown ones are kept as given
+    @Test
+    public void testDeliveryRead() throws IOException {
+        assertEquals(new Delivery("tartu", "car", null), read("{\"city\": \" TARTU \", \"vehicle\": \"Car\"}"));
+        assertEquals(new Delivery("pärnu", "scooter", 1742135000L), read("{\"vehicle\": \"scooter\", \"city\": \"P\\u00c4RNU\", \"timestamp\": 1742135000}"));
+        assertEquals(new Delivery("Narva", "Hot Wheels", null), read("{\"city\": \"Narva\", \"vehicle\": \"Hot Wheels\"}"));
+
+        // As databind: unknown fields are skipped, scalars are taken as text and numeric strings as timestamps
+        assertEquals(new Delivery("tallinn", "bike", 1742135000L),
+                read("{\"city\": \"Tallinn\", \"extra\": {\"a\": [1, 2]}, \"vehicle\": \"Bike\", \"timestamp\": \"1742135000\"}"));
+        assertEquals(new Delivery("42", "bike", null), read("{\"city\": 42, \"vehicle\": \"bike\", \"timestamp\": null}"));
+    }
+
+    // Tests that malformed JSON or missing fields are not readable, which is answered with HTTP 400
+    @Test
+    public void testInvalidDeliveryRejected() {
+        for (String json : List.of("{\"vehicle\": \"Car\"}", "{\"city\": \"Tartu\", \"vehicle\": null}", "[]",
+                "{\"city\": \"Tartu\", \"vehicle\": \"Car\"", "{\"city\": [\"Tartu\"], \"vehicle\": \"Car\"}",
+                "{\"city\": \"Tartu\", \"vehicle\": \"Car\", \"timestamp\": \"yesterday\"}")) {
+            assertThrows(HttpMessageNotReadableException.class, () -> read(json), json);
+        }
+    }
+
+    // Tests that quotes are written exactly as Jackson writes them, whether written digit by digit or not
+    @Test
+    public void testFeeQuoteWritten() throws IOException {
+        for (int cents = 0; cents <= 10_000; cents++) assertWrittenAsJackson(FeeQuote.ofFee(cents / 100.0));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            assertWrittenAsJackson(FeeQuote.ofFee(random.nextLong(1_000_000_000L) / 100.0));
+            assertWrittenAsJackson(FeeQuote.ofFee(random.nextDouble() * 100));
+        }
+        for (double fee : new double[]{-0.0, -1.0, 1e7, 123456789.5, 1e-5, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertWrittenAsJackson(FeeQuote.ofFee(fee));
+        }
+
+        for (String error : List.of(FeeQuote.CITY_NOT_FOUND, FeeQuote.WEATHER_NOT_AVAILABLE, FeeQuote.VEHICLE_FORBIDDEN,
+                FeeQuote.INVALID_JSON, "Some other \"error\"")) {
+            assertWrittenAsJackson(FeeQuote.ofError(error));
+        }
+    }
+
+    private Delivery read(String json) throws IOException {
+        MockHttpInputMessage inputMessage = new MockHttpInputMessage(json.getBytes(StandardCharsets.UTF_8));
+        inputMessage.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return deliveryMessageConverter.read(Delivery.class, inputMessage);
+    }
+
+    private void assertWrittenAsJackson(FeeQuote quote) throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        feeQuoteMessageConverter.write(quote, MediaType.APPLICATION_JSON, outputMessage);
+
+        String expected = objectMapper.writeValueAsString(quote);
+        assertEquals(expected, outputMessage.getBodyAsString(StandardCharsets.UTF_8));
+        long contentLength = outputMessage.getHeaders().getContentLength();
+        if (contentLength >= 0) assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, contentLength, expected);
+    }
+}
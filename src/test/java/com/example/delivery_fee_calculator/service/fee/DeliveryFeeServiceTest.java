@@ -132,4 +132,41 @@ public class DeliveryFeeServiceTest {
     void testCarUnderAdverseWeather() {
         assertEquals(4.0, deliveryFeeService.deliveryFeeCalculator("Tallinn", "Car", -20.0, 25.0, "Hail"));
     }
+
+    /**
+     * Test fee lookup with interned city and vehicle codes, forbidden usage is given as a sentinel value
+     */
+    @Test
+    void testFeeLookupByCodes() {
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        int tartu = feeTable.cityCode("tartu");
+        int bike = feeTable.vehicleCode("bike");
+
+        assertEquals(2.5, feeTable.fee(tartu, bike, 10.0, 0.0, PhenomenonClass.NONE));
+        assertEquals(4.5, feeTable.fee(tartu, bike, -10.0, 10.0, PhenomenonClass.SNOW_SLEET));
+        assertEquals(3.0, feeTable.fee(tartu, bike, -0.0, 0.0, PhenomenonClass.NONE));
+        assertEquals(FeeTable.FORBIDDEN, feeTable.fee(tartu, bike, 10.0, 20.1, PhenomenonClass.NONE));
+        assertEquals(FeeTable.FORBIDDEN, feeTable.fee(tartu, bike, 10.0, 0.0, PhenomenonClass.FORBIDDEN));
+
+        // Unknown city or vehicle
+        assertEquals(FeeTable.UNKNOWN, feeTable.cityCode("narva"));
+        assertEquals(FeeTable.UNKNOWN, feeTable.vehicleCode("hot wheels"));
+        assertEquals(FeeTable.FORBIDDEN, feeTable.fee(FeeTable.UNKNOWN, bike, 10.0, 0.0, PhenomenonClass.NONE));
+        assertEquals(FeeTable.FORBIDDEN, feeTable.fee(tartu, FeeTable.UNKNOWN, 10.0, 0.0, PhenomenonClass.NONE));
+    }
+
+    /**
+     * Test that a measured value that is not a number costs nothing extra, like any value outside of all bands
+     */
+    @Test
+    void testNotANumberCostsNothingExtra() {
+        FeeTable feeTable = deliveryFeeService.feeTable();
+        int tartu = feeTable.cityCode("tartu");
+        int bike = feeTable.vehicleCode("bike");
+
+        assertEquals(2.5, feeTable.fee(tartu, bike, 10.0, Double.NaN, PhenomenonClass.NONE));
+        assertEquals(2.5, feeTable.fee(tartu, bike, Double.NaN, 0.0, PhenomenonClass.NONE));
+        assertEquals(3.0, feeTable.fee(tartu, bike, Double.NaN, Double.NaN, PhenomenonClass.RAIN));
+        assertEquals(2.5, deliveryFeeService.deliveryFeeCalculator("Tartu", "Bike", 10.0, Double.NaN, "Clear"));
+    }
 }
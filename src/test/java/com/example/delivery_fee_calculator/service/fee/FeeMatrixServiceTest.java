@@ -0,0 +1,114 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.dto.FeeChanges;
+import com.example.delivery_fee_calculator.dto.FeeUpdate;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.example.delivery_fee_calculator.service.CachedWeatherServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for FeeMatrixService.
+ *
+ * <p>
+ *     Validates that new weather publishes only the changed fees, and that changes since a version are merged,
+ *     falling back to the whole matrix for an unknown version.
+ * </p>
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+@RecordApplicationEvents
+public class FeeMatrixServiceTest {
+
+    @Autowired
+    FeeMatrixService feeMatrixService;
+
+    @Autowired
+    CachedWeatherServiceImpl cachedWeatherService;
+
+    @Autowired
+    WeatherRepository weatherRepository;
+
+    @Autowired
+    ApplicationEvents applicationEvents;
+
+    @BeforeEach
+    void setUp() {
+        // No weather at all, every pair is an error
+        weatherRepository.deleteAll();
+        cachedWeatherService.refresh();
+        applicationEvents.clear();
+    }
+
+    // Tests that only the pairs whose fee changed are published, and merged into the changes since a version
+    @Test
+    public void testChangedFeesPublished() {
+        long start = feeMatrixService.changesSince(null).version();
+
+        cachedWeatherService.saveWeather(weather(1.1, 2.0, 1000L));
+        assertEquals(List.of(
+                        new FeeUpdate("tallinn", "bike", 3.0, null),
+                        new FeeUpdate("tallinn", "car", 4.0, null),
+                        new FeeUpdate("tallinn", "scooter", 3.5, null)),
+                lastEvent().changes());
+        long afterFirst = lastEvent().version();
+
+        // Stronger wind adds an extra fee only for bikes
+        cachedWeatherService.saveWeather(weather(1.1, 15.0, 2000L));
+        assertEquals(List.of(new FeeUpdate("tallinn", "bike", 3.5, null)), lastEvent().changes());
+
+        // Same fees from newer weather change nothing
+        cachedWeatherService.saveWeather(weather(1.5, 15.0, 3000L));
+        assertEquals(2, publishedEvents().size());
+
+        FeeChanges sinceFirst = feeMatrixService.changesSince(afterFirst);
+        assertFalse(sinceFirst.full());
+        assertEquals(List.of(new FeeUpdate("tallinn", "bike", 3.5, null)), sinceFirst.changes());
+
+        // The bike fee of the second change replaces the one of the first
+        FeeChanges sinceStart = feeMatrixService.changesSince(start);
+        assertEquals(afterFirst + 1, sinceStart.version());
+        assertEquals(3, sinceStart.changes().size());
+        assertTrue(sinceStart.changes().contains(new FeeUpdate("tallinn", "bike", 3.5, null)));
+
+        assertTrue(feeMatrixService.changesSince(sinceStart.version()).changes().isEmpty());
+    }
+
+    // Tests that the whole matrix is returned without a version or for an unknown one
+    @Test
+    public void testFullMatrix() {
+        cachedWeatherService.saveWeather(weather(1.1, 2.0, 1000L));
+
+        FeeChanges full = feeMatrixService.changesSince(null);
+        assertTrue(full.full());
+        assertEquals(9, full.changes().size());
+        assertTrue(full.changes().contains(new FeeUpdate("tartu", "car", null, "Weather data not available")));
+
+        assertTrue(feeMatrixService.changesSince(full.version() + 1).full());
+        assertTrue(feeMatrixService.changesSince(0L).full());
+    }
+
+    // Distinct published changes, the recorder may hold the same event more than once
+    private List<FeeMatrixChangedEvent> publishedEvents() {
+        return applicationEvents.stream(FeeMatrixChangedEvent.class).distinct().toList();
+    }
+
+    private FeeMatrixChangedEvent lastEvent() {
+        List<FeeMatrixChangedEvent> events = publishedEvents();
+        return events.get(events.size() - 1);
+    }
+
+    private static Weather weather(double temp, double wind, long timestamp) {
+        return Weather.builder().name("Tallinn-Harku").wmo("26038").temp(temp).wind(wind).phenomenon("Clear").timestamp(timestamp).build();
+    }
+}
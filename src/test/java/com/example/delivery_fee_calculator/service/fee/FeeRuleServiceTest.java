@@ -0,0 +1,130 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import com.example.delivery_fee_calculator.entity.BaseFeeRule;
+import com.example.delivery_fee_calculator.entity.ExtraFeeRule;
+import com.example.delivery_fee_calculator.repository.BaseFeeRuleRepository;
+import com.example.delivery_fee_calculator.repository.ExtraFeeRuleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for FeeRuleService.
+ *
+ * <p>
+ *     Validates that business rules stored in the database are seeded, and that changes to them are swapped in
+ *     at runtime, while invalid rules are rejected.
+ * </p>
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class FeeRuleServiceTest {
+
+    @Autowired
+    FeeRuleService feeRuleService;
+
+    @Autowired
+    DeliveryFeeService deliveryFeeService;
+
+    @Autowired
+    BaseFeeRuleRepository baseFeeRuleRepository;
+
+    @Autowired
+    ExtraFeeRuleRepository extraFeeRuleRepository;
+
+    @AfterEach
+    void tearDown() {
+        // Restore the default rules, the application context is shared with other tests
+        baseFeeRuleRepository.deleteAll();
+        extraFeeRuleRepository.deleteAll();
+        feeRuleService.init();
+    }
+
+    // Tests that the database is seeded with the default rules, which compile into the default fee table
+    @Test
+    public void testDefaultRulesSeeded() {
+        assertEquals(9, baseFeeRuleRepository.count());
+        assertEquals(12, extraFeeRuleRepository.count());
+        assertEquals(FeeTable.compile(DefaultFeeRules.baseFeeRules(), DefaultFeeRules.extraFeeRules()), deliveryFeeService.feeTable());
+        assertFalse(feeRuleService.reload());
+    }
+
+    // Tests that a changed rate and a new city are served after a reload, without a restart
+    @Test
+    public void testChangedRulesSwappedIn() {
+        FeeTable previous = deliveryFeeService.feeTable();
+
+        BaseFeeRule changedRule = baseFeeRuleRepository.findAll().iterator().next();
+        changedRule.setFee(10.0);
+        baseFeeRuleRepository.save(changedRule);
+        baseFeeRuleRepository.save(BaseFeeRule.builder().city("narva").vehicle("bike").fee(2.0).build());
+
+        // Rules are not used before they are reloaded
+        assertNull(deliveryFeeService.deliveryFeeCalculator("Narva", "Bike", 10.0, 0.0, "Clear"));
+
+        assertTrue(feeRuleService.reload());
+        assertNotEquals(previous.version(), deliveryFeeService.feeTable().version());
+        assertEquals(10.0, deliveryFeeService.deliveryFeeCalculator(changedRule.getCity(), changedRule.getVehicle(), 10.0, 0.0, "Clear"));
+
+        // Narva gets the extra fee bands of bikes, but no other vehicle
+        assertEquals(2.0, deliveryFeeService.deliveryFeeCalculator("Narva", "Bike", 10.0, 0.0, "Clear"));
+        assertEquals(3.0, deliveryFeeService.deliveryFeeCalculator("Narva", "Bike", -5.0, 15.0, "Clear"));
+        assertNull(deliveryFeeService.deliveryFeeCalculator("Narva", "Car", 10.0, 0.0, "Clear"));
+    }
+
+    // Tests that a changed extra fee band moves the band bounds of the fee table
+    @Test
+    public void testChangedBandSwappedIn() {
+        // Wind from 10 to 20 becomes from 8 to 20 for bikes
+        ExtraFeeRule windBand = StreamSupport.stream(extraFeeRuleRepository.findAll().spliterator(), false)
+                .filter(rule -> rule.getCondition() == ExtraFeeRule.Condition.WIND_SPEED && !rule.isForbidden())
+                .findFirst().orElseThrow();
+        windBand.setMinValue(8.0);
+        extraFeeRuleRepository.save(windBand);
+
+        assertEquals(3.0, deliveryFeeService.deliveryFeeCalculator("Tallinn", "Bike", 10.0, 9.0, "Clear"));
+        assertTrue(feeRuleService.reload());
+        assertEquals(3.5, deliveryFeeService.deliveryFeeCalculator("Tallinn", "Bike", 10.0, 9.0, "Clear"));
+        assertEquals(3.0, deliveryFeeService.deliveryFeeCalculator("Tallinn", "Bike", 10.0, 7.9, "Clear"));
+    }
+
+    // Tests that overlapping bands are rejected and the current fee table is kept
+    @Test
+    public void testInvalidRulesRejected() {
+        FeeTable current = deliveryFeeService.feeTable();
+
+        // Overlaps the band from -10 to 0 of bikes
+        extraFeeRuleRepository.save(ExtraFeeRule.builder().vehicle("bike").condition(ExtraFeeRule.Condition.AIR_TEMPERATURE)
+                .minValue(-5.0).minInclusive(true).maxValue(5.0).maxInclusive(true).fee(2.0).build());
+
+        assertFalse(feeRuleService.reload());
+        assertSame(current, deliveryFeeService.feeTable());
+    }
+
+    // Tests that incomplete rules and negative fees are rejected and the current fee table is kept
+    @Test
+    public void testIncompleteRulesRejected() {
+        FeeTable current = deliveryFeeService.feeTable();
+
+        // Phenomenon band without a phenomenon class
+        ExtraFeeRule phenomenonBand = extraFeeRuleRepository.save(ExtraFeeRule.builder().vehicle("bike")
+                .condition(ExtraFeeRule.Condition.PHENOMENON).fee(1.0).build());
+        assertFalse(feeRuleService.reload());
+        assertSame(current, deliveryFeeService.feeTable());
+        extraFeeRuleRepository.delete(phenomenonBand);
+
+        // A fee of -1.0 must not be taken for a forbidden vehicle
+        BaseFeeRule negativeFee = baseFeeRuleRepository.save(BaseFeeRule.builder().city("narva").vehicle("bike").fee(-1.0).build());
+        assertFalse(feeRuleService.reload());
+        assertSame(current, deliveryFeeService.feeTable());
+        baseFeeRuleRepository.delete(negativeFee);
+
+        assertFalse(feeRuleService.reload());
+    }
+}
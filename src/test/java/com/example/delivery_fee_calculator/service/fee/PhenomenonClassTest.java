@@ -0,0 +1,91 @@
+package com.example.delivery_fee_calculator.service.fee;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests classification of the weather phenomena reported by the weather portal
+ */
+@SpringBootTest
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class PhenomenonClassTest {
+
+    // Every phenomenon of the weather portal and its class
+    private static final Object[][] VOCABULARY = {
+            {"Clear", PhenomenonClass.NONE},
+            {"Few clouds", PhenomenonClass.NONE},
+            {"Variable clouds", PhenomenonClass.NONE},
+            {"Cloudy with clear spells", PhenomenonClass.NONE},
+            {"Cloudy", PhenomenonClass.NONE},
+            {"Overcast", PhenomenonClass.NONE},
+            {"Mist", PhenomenonClass.NONE},
+            {"Fog", PhenomenonClass.NONE},
+            {"Light shower", PhenomenonClass.NONE},
+            {"Moderate shower", PhenomenonClass.NONE},
+            {"Heavy shower", PhenomenonClass.NONE},
+            {"Light rain", PhenomenonClass.RAIN},
+            {"Moderate rain", PhenomenonClass.RAIN},
+            {"Heavy rain", PhenomenonClass.RAIN},
+            {"Light snow shower", PhenomenonClass.SNOW_SLEET},
+            {"Moderate snow shower", PhenomenonClass.SNOW_SLEET},
+            {"Heavy snow shower", PhenomenonClass.SNOW_SLEET},
+            {"Light sleet", PhenomenonClass.SNOW_SLEET},
+            {"Moderate sleet", PhenomenonClass.SNOW_SLEET},
+            {"Light snowfall", PhenomenonClass.SNOW_SLEET},
+            {"Moderate snowfall", PhenomenonClass.SNOW_SLEET},
+            {"Heavy snowfall", PhenomenonClass.SNOW_SLEET},
+            {"Blowing snow", PhenomenonClass.SNOW_SLEET},
+            {"Drifting snow", PhenomenonClass.SNOW_SLEET},
+            {"Glaze", PhenomenonClass.FORBIDDEN},
+            {"Hail", PhenomenonClass.FORBIDDEN},
+            {"Thunder", PhenomenonClass.FORBIDDEN},
+            {"Thunderstorm", PhenomenonClass.FORBIDDEN}};
+
+    // Text outside of the vocabulary and its class
+    private static final Object[][] UNKNOWN = {
+            {null, PhenomenonClass.NONE},
+            {"", PhenomenonClass.NONE},
+            {"Sunny", PhenomenonClass.NONE},
+            {"Wet snow", PhenomenonClass.SNOW_SLEET},
+            {"Heavy sleet", PhenomenonClass.SNOW_SLEET},
+            {"Freezing rain", PhenomenonClass.RAIN},
+            {"Freezing drizzle", PhenomenonClass.NONE},
+            {"Rain and snow", PhenomenonClass.SNOW_SLEET},
+            {"Thunderstorm with rain", PhenomenonClass.RAIN},
+            {"Small hail", PhenomenonClass.FORBIDDEN}};
+
+    /**
+     * Tests every phenomenon of the weather portal
+     */
+    @Test
+    void testVocabulary() {
+        for (Object[] row : VOCABULARY) {
+            assertEquals(row[1], PhenomenonClass.classify((String) row[0]), (String) row[0]);
+        }
+    }
+
+    /**
+     * Tests that the phenomena of the weather portal are classified ignoring case
+     */
+    @Test
+    void testVocabularyIgnoresCase() {
+        for (Object[] row : VOCABULARY) {
+            String phenomenon = (String) row[0];
+            assertEquals(row[1], PhenomenonClass.classify(phenomenon.toUpperCase()), phenomenon);
+            assertEquals(row[1], PhenomenonClass.classify(phenomenon.toLowerCase()), phenomenon);
+        }
+    }
+
+    /**
+     * Tests that phenomena outside of the vocabulary are classified by the words they contain
+     */
+    @Test
+    void testUnknownPhenomena() {
+        for (Object[] row : UNKNOWN) {
+            assertEquals(row[1], PhenomenonClass.classify((String) row[0]), (String) row[0]);
+        }
+    }
+}
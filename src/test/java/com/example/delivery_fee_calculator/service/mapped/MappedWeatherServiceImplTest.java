@@ -0,0 +1,115 @@
+package com.example.delivery_fee_calculator.service.mapped;
+
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import com.example.delivery_fee_calculator.service.WeatherSnapshotChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MappedWeatherServiceImpl.
+ *
+ * <p>
+ *     Validates that the mapped profile replaces the database backed weather service, and that observations are
+ *     stored, looked up and reopened from the memory-mapped files.
+ * </p>
+ */
+@SpringBootTest
+@ActiveProfiles({"test", "mapped"}) // Test DB profile, with weather stored in memory-mapped files
+public class MappedWeatherServiceImplTest {
+
+    // 2025-01-01T00:00:00Z
+    private static final long YEAR_2025 = 1_735_689_600L;
+
+    @TempDir
+    static Path profileDirectory;
+
+    @DynamicPropertySource
+    static void storeDirectory(DynamicPropertyRegistry registry) {
+        registry.add("weather.store.directory", () -> profileDirectory.toString());
+    }
+
+    @Autowired
+    WeatherService weatherService;
+
+    // Tests that the mapped profile selects the mapped weather service
+    @Test
+    public void testProfileSelectsMappedService() {
+        assertInstanceOf(MappedWeatherServiceImpl.class, weatherService);
+    }
+
+    // Tests saving and the lookups by timestamp, across the partitions of two years
+    @Test
+    public void testLookups(@TempDir Path directory) throws Exception {
+        List<Object> events = new ArrayList<>();
+        MappedWeatherServiceImpl service = new MappedWeatherServiceImpl(directory, events::add);
+
+        List<Weather> stored = service.saveAllWeather(List.of(
+                weather("Tartu-Tõravere", YEAR_2025 - 3600, "Light snow shower"),
+                weather("Tartu-Tõravere", YEAR_2025 + 3600, "Clear"),
+                weather("Tartu-Tõravere", YEAR_2025 + 3600, "Clear"),
+                weather("Pärnu", YEAR_2025, "")));
+
+        // The repeated record is skipped
+        assertEquals(3, stored.size());
+        assertEquals(1, events.size());
+        assertEquals(YEAR_2025 + 3600, ((WeatherSnapshotChangedEvent) events.get(0)).latestByStation().get("Tartu-Tõravere").getTimestamp());
+
+        assertEquals("Clear", service.fetchLatestWeatherByStation("Tartu-Tõravere").getPhenomenon());
+        assertEquals("Light snow shower", service.fetchWeatherByStationAtTime("Tartu-Tõravere", YEAR_2025 + 3599).getPhenomenon());
+        assertEquals(YEAR_2025 + 3600, service.fetchWeatherByStationAtTime("Tartu-Tõravere", YEAR_2025 + 3600).getTimestamp());
+        assertNull(service.fetchWeatherByStationAtTime("Tartu-Tõravere", YEAR_2025 - 3601));
+        assertEquals(-5.0, service.fetchWeatherByStationAndTimestamp("Tartu-Tõravere", YEAR_2025 - 3600).getTemp());
+        assertNull(service.fetchWeatherByStationAndTimestamp("Tartu-Tõravere", YEAR_2025));
+        assertEquals("", service.fetchLatestWeatherByStation("Pärnu").getPhenomenon());
+        assertNull(service.fetchLatestWeatherByStation("Unknown"));
+        assertEquals(List.of(YEAR_2025 + 3600, YEAR_2025 - 3600),
+                service.fetchWeatherByStation("Tartu-Tõravere").stream().map(Weather::getTimestamp).toList());
+        // Record in effect at the start of a period, then the ones within it, oldest first
+        assertEquals(List.of(YEAR_2025 - 3600, YEAR_2025 + 3600),
+                service.fetchWeatherByStationDuring("Tartu-Tõravere", YEAR_2025 - 1800, YEAR_2025 + 3600).stream().map(Weather::getTimestamp).toList());
+        assertEquals(List.of(YEAR_2025 - 3600),
+                service.fetchWeatherByStationDuring("Tartu-Tõravere", YEAR_2025 - 7200, YEAR_2025 + 3599).stream().map(Weather::getTimestamp).toList());
+        service.close();
+    }
+
+    // Tests that records arriving out of order, beyond the initial capacity of a file, are kept sorted and reopened
+    @Test
+    public void testOutOfOrderInsertsAndReopen(@TempDir Path directory) throws Exception {
+        MappedWeatherServiceImpl service = new MappedWeatherServiceImpl(directory, event -> { });
+        // Even hours first, then the odd hours in between
+        for (int parity = 0; parity < 2; parity++) {
+            List<Weather> weatherList = new ArrayList<>();
+            for (int hour = parity; hour < 3000; hour += 2) {
+                weatherList.add(weather("Tallinn-Harku", YEAR_2025 + hour * 3600L, "Clear"));
+            }
+            assertEquals(1500, service.saveAllWeather(weatherList).size());
+        }
+        service.close();
+
+        MappedWeatherServiceImpl reopened = new MappedWeatherServiceImpl(directory, event -> { });
+        List<Weather> weatherList = reopened.fetchWeatherByStation("Tallinn-Harku");
+        assertEquals(3000, weatherList.size());
+        for (int i = 0; i < weatherList.size(); i++) {
+            assertEquals(YEAR_2025 + (2999 - i) * 3600L, weatherList.get(i).getTimestamp());
+        }
+        assertEquals(YEAR_2025 + 1234 * 3600L, reopened.fetchWeatherByStationAtTime("Tallinn-Harku", YEAR_2025 + 1234 * 3600L + 1800).getTimestamp());
+        assertEquals("26038", reopened.fetchLatestWeatherByStation("Tallinn-Harku").getWmo());
+        reopened.close();
+    }
+
+    private static Weather weather(String station, long timestamp, String phenomenon) {
+        return Weather.builder().name(station).wmo("26038").temp(-5.0).wind(2.5).phenomenon(phenomenon).timestamp(timestamp).build();
+    }
+}
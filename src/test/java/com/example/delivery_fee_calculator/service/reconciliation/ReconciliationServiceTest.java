@@ -0,0 +1,244 @@
+package com.example.delivery_fee_calculator.service.reconciliation;
+
+import com.example.delivery_fee_calculator.dto.FeeQuote;
+import com.example.delivery_fee_calculator.entity.Weather;
+import com.example.delivery_fee_calculator.repository.WeatherRepository;
+import com.example.delivery_fee_calculator.service.CachedWeatherServiceImpl;
+import com.example.delivery_fee_calculator.service.CityRegistry;
+import com.example.delivery_fee_calculator.service.WeatherService;
+import com.example.delivery_fee_calculator.service.fee.DeliveryFeeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration tests for ReconciliationService.
+ *
+ * <p>
+ *     Validates that the fees recomputed in bulk match the ones quoted one order at a time, from the weather in effect
+ *     at the time of the order, across several chunks.
+ * </p>
+ */
+@SpringBootTest(properties = "delivery.reconciliation.chunk-size=100")
+@ActiveProfiles("test") // Ensures the tests run against the test DB profile
+public class ReconciliationServiceTest {
+
+    private static final long HISTORY_START = 1742000000L;
+
+    @Autowired
+    ReconciliationService reconciliationService;
+
+    @Autowired
+    DeliveryFeeService deliveryFeeService;
+
+    @Autowired
+    WeatherService weatherService;
+
+    @Autowired
+    CityRegistry cityRegistry;
+
+    @Autowired
+    WeatherRepository weatherRepository;
+
+    @Autowired
+    CachedWeatherServiceImpl cachedWeatherService;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository.deleteAll();
+        cachedWeatherService.refresh();
+    }
+
+    // Tests that every order is answered with the same fee or error as a single quote at its timestamp
+    @Test
+    public void testFeesMatchSingleQuotes(@TempDir Path directory) throws Exception {
+        String[] phenomena = {"Clear", "Light rain", "Light snow shower", "Moderate sleet", "Glaze", "Thunder", "Overcast"};
+        String[] cities = {"Tallinn", "tartu", "PÄRNU", "Narva"};
+        String[] vehicles = {"Car", "scooter", "BIKE", "Truck"};
+        Random random = new Random(42);
+
+        // Hourly history of two days for every station
+        List<Weather> history = new ArrayList<>();
+        for (String station : cityRegistry.stations()) {
+            for (int hour = 0; hour < 48; hour++) {
+                history.add(Weather.builder().name(station).wmo("0")
+                        .temp(Math.round(random.nextDouble() * 250 - 200) / 10.0)
+                        .wind(Math.round(random.nextDouble() * 250) / 10.0)
+                        .phenomenon(phenomena[random.nextInt(phenomena.length)])
+                        .timestamp(HISTORY_START + hour * 3600L).build());
+            }
+        }
+        weatherService.saveAllWeather(history);
+
+        // Orders from an hour before the history to an hour after it, in random order, and lines that are no orders
+        Map<String, String> expected = new HashMap<>();
+        StringBuilder input = new StringBuilder("order_id,city,vehicle,timestamp\n");
+        for (int order = 1; order <= 1000; order++) {
+            String city = cities[random.nextInt(cities.length)];
+            String vehicle = vehicles[random.nextInt(vehicles.length)];
+            long timestamp = HISTORY_START - 3600 + (long) (random.nextDouble() * 50 * 3600);
+            input.append("order-").append(order).append(',').append(city).append(',').append(vehicle).append(',').append(timestamp).append('\n');
+            expected.put("order-" + order, expectedLine(city, vehicle, timestamp));
+        }
+        input.append("order-1001,Tallinn,Car\n").append("order-1002,Tallinn,Car,yesterday\n").append("\n").append("no order\n");
+        expected.put("order-1001", "," + ReconciliationService.INVALID_RECORD);
+        expected.put("order-1002", "," + ReconciliationService.INVALID_RECORD);
+        expected.put("line 1005", "," + ReconciliationService.INVALID_RECORD);
+
+        Path orders = Files.writeString(directory.resolve("orders.csv"), input, StandardCharsets.UTF_8);
+        Path fees = directory.resolve("fees.csv");
+        ReconciliationService.Summary summary = reconciliationService.reconcile(orders, fees);
+
+        List<String> lines = Files.readAllLines(fees, StandardCharsets.UTF_8);
+        assertEquals("order_id,fee,error", lines.get(0));
+        Map<String, String> actual = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            int separator = line.indexOf(',');
+            actual.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+        assertEquals(expected, actual);
+        assertEquals(1003, summary.orders());
+        assertEquals(expected.values().stream().filter(line -> line.startsWith(",")).count(), summary.errors());
+    }
+
+    // Tests that only the weather in effect during the orders of a chunk is read, with every chunk mixing all stations,
+    // and that the orders of a chunk are written by station and timestamp
+    @Test
+    public void testWeatherReadPerChunk(@TempDir Path directory) throws Exception {
+        List<String> stations = new ArrayList<>(cityRegistry.stations());
+        Map<String, String> cityOfStation = new HashMap<>();
+        for (String city : cityRegistry.cities()) cityOfStation.put(cityRegistry.station(city), city);
+
+        // Hourly history of 30 days for every station
+        List<Weather> history = new ArrayList<>();
+        for (String station : stations) {
+            for (int hour = 0; hour < 30 * 24; hour++) {
+                history.add(Weather.builder().name(station).wmo("0").temp(-12.0 + hour % 24).wind((double) (hour % 25))
+                        .phenomenon(hour % 3 == 0 ? "Light snow" : "Clear").timestamp(HISTORY_START + hour * 3600L).build());
+            }
+        }
+        weatherService.saveAllWeather(history);
+
+        // Orders a minute apart on a day in the middle of the history, newest first, cycling through the stations
+        int orderCount = 300;
+        long firstOrder = HISTORY_START + 15 * 24 * 3600L + 1800;
+        Map<String, String> expected = new HashMap<>();
+        List<List<String>> expectedChunks = new ArrayList<>();
+        StringBuilder input = new StringBuilder();
+        for (int order = 0; order < orderCount; order++) {
+            String city = cityOfStation.get(stations.get(order % stations.size()));
+            long timestamp = firstOrder + (orderCount - order) * 60L;
+            input.append("order-").append(order).append(',').append(city).append(",Bike,").append(timestamp).append('\n');
+            expected.put("order-" + order, expectedLine(city, "Bike", timestamp));
+            if (order % 100 == 0) expectedChunks.add(new ArrayList<>());
+            expectedChunks.get(order / 100).add("order-" + order);
+        }
+        // Within a chunk by station, then oldest first, the input is newest first
+        List<String> expectedOrder = new ArrayList<>();
+        for (List<String> expectedChunk : expectedChunks) {
+            for (int station = 0; station < stations.size(); station++) {
+                for (int k = expectedChunk.size() - 1; k >= 0; k--) {
+                    int order = Integer.parseInt(expectedChunk.get(k).substring("order-".length()));
+                    if (order % stations.size() == station) expectedOrder.add(expectedChunk.get(k));
+                }
+            }
+        }
+
+        CountingWeatherService countingWeatherService = new CountingWeatherService(weatherService);
+        ReconciliationService service = new ReconciliationService(deliveryFeeService, countingWeatherService, cityRegistry, 100);
+        Path fees = directory.resolve("fees.csv");
+        service.reconcile(Files.writeString(directory.resolve("orders.csv"), input, StandardCharsets.UTF_8), fees);
+
+        List<String> lines = Files.readAllLines(fees, StandardCharsets.UTF_8);
+        List<String> actualOrder = new ArrayList<>();
+        Map<String, String> actual = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            int separator = line.indexOf(',');
+            actualOrder.add(line.substring(0, separator));
+            actual.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+        assertEquals(expected, actual);
+        assertEquals(expectedOrder, actualOrder);
+
+        // Every chunk spans 100 minutes, so at most the record in effect and two more per station and chunk are read
+        assertEquals(3 * stations.size(), countingWeatherService.reads);
+        assertTrue(countingWeatherService.records <= 3 * stations.size() * 3, countingWeatherService.records + " records read");
+    }
+
+    // Fee and error columns of an order, as quoted on its own
+    private String expectedLine(String city, String vehicle, long timestamp) {
+        String station = cityRegistry.station(city);
+        if (station == null) return "," + FeeQuote.CITY_NOT_FOUND;
+        Weather weather = weatherService.fetchWeatherByStationAtTime(station, timestamp);
+        if (weather == null) return "," + FeeQuote.WEATHER_NOT_AVAILABLE;
+        Double fee = deliveryFeeService.deliveryFeeCalculator(city, vehicle, weather.getTemp(), weather.getWind(), weather.getPhenomenon());
+        return fee == null ? "," + FeeQuote.VEHICLE_FORBIDDEN : fee + ",";
+    }
+
+    // Weather service counting the weather read for periods
+    private static final class CountingWeatherService implements WeatherService {
+
+        private final WeatherService weatherService;
+
+        private int reads;
+
+        private int records;
+
+        CountingWeatherService(WeatherService weatherService) {
+            this.weatherService = weatherService;
+        }
+
+        @Override
+        public void saveWeather(Weather weather) {
+            weatherService.saveWeather(weather);
+        }
+
+        @Override
+        public List<Weather> saveAllWeather(List<Weather> weatherList) {
+            return weatherService.saveAllWeather(weatherList);
+        }
+
+        @Override
+        public List<Weather> fetchWeatherByStation(String station) {
+            throw new AssertionError("Whole history of " + station + " read");
+        }
+
+        @Override
+        public Weather fetchLatestWeatherByStation(String station) {
+            return weatherService.fetchLatestWeatherByStation(station);
+        }
+
+        @Override
+        public Weather fetchWeatherByStationAndTimestamp(String station, Long timestamp) {
+            return weatherService.fetchWeatherByStationAndTimestamp(station, timestamp);
+        }
+
+        @Override
+        public Weather fetchWeatherByStationAtTime(String station, Long timestamp) {
+            return weatherService.fetchWeatherByStationAtTime(station, timestamp);
+        }
+
+        @Override
+        public List<Weather> fetchWeatherByStationDuring(String station, Long from, Long until) {
+            List<Weather> weatherList = weatherService.fetchWeatherByStationDuring(station, from, until);
+            reads++;
+            records += weatherList.size();
+            return weatherList;
+        }
+    }
+}